@@ -0,0 +1,161 @@
+package edu.usfca.cs272;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Compares {@link WorkQueue} and {@link StealingWorkQueue} side by side on many
+ * small tasks, both submitted from outside the queue (like one search per query
+ * line) and submitted by the tasks themselves (like the crawler adding links).
+ *
+ * Usage: {@code WorkQueueBenchmark [threads] [tasks] [rounds]}
+ *
+ * Benchmarks are kept out of {@code src/main/java} so they are not shipped with
+ * the search engine. Compile and run this one against the built classes:
+ *
+ * <pre>
+ * mvn compile
+ * javac -cp target/classes -d target/bench src/bench/java/edu/usfca/cs272/*.java
+ * java -cp target/classes:target/bench:... edu.usfca.cs272.WorkQueueBenchmark
+ * </pre>
+ *
+ * where {@code ...} is the Log4j classpath.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class WorkQueueBenchmark {
+
+	/** Number of tasks each nested task submits. */
+	private static final int FANOUT = 4;
+
+	/** Prevents instantiating this class. */
+	private WorkQueueBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args optional number of threads, tasks, and rounds
+	 */
+	public static void main(String[] args) {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : TaskQueue.DEFAULT;
+		int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		System.out.printf("%d threads, %d tasks, best of %d rounds%n", threads, tasks, rounds);
+		compare("flat", threads, tasks, rounds, WorkQueueBenchmark::flat);
+		compare("nested", threads, tasks, rounds, WorkQueueBenchmark::nested);
+	}
+
+	/**
+	 * A benchmark that submits tasks to a queue and waits for them to finish.
+	 */
+	@FunctionalInterface
+	private interface Workload {
+		/**
+		 * Submits the workload and waits for it to finish.
+		 *
+		 * @param queue the queue to run the workload on
+		 * @param tasks the number of tasks to run
+		 * @param done  counts finished tasks
+		 */
+		public void run(TaskQueue queue, int tasks, LongAdder done);
+	}
+
+	/**
+	 * Runs a workload on both queues and prints the best time of each.
+	 *
+	 * @param name     name of the workload
+	 * @param threads  number of worker threads
+	 * @param tasks    number of tasks per round
+	 * @param rounds   number of timed rounds, after one warmup round
+	 * @param workload the workload to run
+	 */
+	private static void compare(String name, int threads, int tasks, int rounds, Workload workload) {
+		double shared = time(WorkQueue::new, threads, tasks, rounds, workload);
+		double stealing = time(StealingWorkQueue::new, threads, tasks, rounds, workload);
+		System.out.printf("%-7s WorkQueue %8.1f ms   StealingWorkQueue %8.1f ms   (%.2fx)%n", name, shared, stealing,
+				shared / stealing);
+	}
+
+	/**
+	 * Times a workload on one kind of queue.
+	 *
+	 * @param factory  creates the queue
+	 * @param threads  number of worker threads
+	 * @param tasks    number of tasks per round
+	 * @param rounds   number of timed rounds, after one warmup round
+	 * @param workload the workload to run
+	 * @return the fastest round in milliseconds
+	 */
+	private static double time(IntFunction<TaskQueue> factory, int threads, int tasks, int rounds,
+			Workload workload) {
+		TaskQueue queue = factory.apply(threads);
+		double best = Double.MAX_VALUE;
+		try {
+			for (int round = 0; round <= rounds; round++) {
+				LongAdder done = new LongAdder();
+				long start = System.nanoTime();
+				workload.run(queue, tasks, done);
+				double elapsed = (System.nanoTime() - start) / 1e6;
+				if (done.sum() != tasks) {
+					throw new IllegalStateException("Only " + done.sum() + " of " + tasks + " tasks finished");
+				}
+				if (round > 0) {
+					best = Math.min(best, elapsed);
+				}
+			}
+		} finally {
+			queue.join();
+		}
+		return best;
+	}
+
+	/**
+	 * Submits every task from the calling thread.
+	 *
+	 * @param queue the queue to run the tasks on
+	 * @param tasks the number of tasks to run
+	 * @param done  counts finished tasks
+	 */
+	private static void flat(TaskQueue queue, int tasks, LongAdder done) {
+		for (int i = 0; i < tasks; i++) {
+			queue.execute(done::increment);
+		}
+		queue.finish();
+	}
+
+	/**
+	 * Submits a single task that submits the rest as a tree of tasks.
+	 *
+	 * @param queue the queue to run the tasks on
+	 * @param tasks the number of tasks to run
+	 * @param done  counts finished tasks
+	 */
+	private static void nested(TaskQueue queue, int tasks, LongAdder done) {
+		queue.execute(() -> spawn(queue, 0, tasks, done));
+		queue.finish();
+	}
+
+	/**
+	 * Counts one task and submits tasks for the rest of its range.
+	 *
+	 * @param queue the queue to run the tasks on
+	 * @param from  the first task of the range
+	 * @param to    the end of the range
+	 * @param done  counts finished tasks
+	 */
+	private static void spawn(TaskQueue queue, int from, int to, LongAdder done) {
+		done.increment();
+		int first = from + 1;
+		int remaining = to - first;
+		int step = Math.max(1, (remaining + FANOUT - 1) / FANOUT);
+		for (int start = first; start < to; start += step) {
+			int low = start;
+			int high = Math.min(to, start + step);
+			queue.execute(() -> spawn(queue, low, high, done));
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package edu.usfca.cs272;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * Stemmer that looks up words in a {@link StemCache} shared between threads,
+ * and only stems the words it misses with a stemmer of its own. Like the
+ * stemmer it wraps, it is not safe to share between threads, but the cache is.
+ *
+ * @see StemmerProvider
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class CachedStemmer implements Stemmer {
+	/**
+	 * Initalize stemmer of the words the cache misses
+	 */
+	private final Stemmer stemmer;
+
+	/**
+	 * Initalize cache of stems, which must only hold stems from the same
+	 * algorithm as the stemmer
+	 */
+	private final StemCache cache;
+
+	/**
+	 * Constructor
+	 *
+	 * @param stemmer the stemmer of the words the cache misses
+	 * @param cache   the cache of stems from the same algorithm
+	 */
+	public CachedStemmer(Stemmer stemmer, StemCache cache) {
+		this.stemmer = stemmer;
+		this.cache = cache;
+	}
+
+	/**
+	 * Stems a word. The stem is always a {@link String}.
+	 */
+	@Override
+	public CharSequence stem(CharSequence word) {
+		String stem = cache.get(word);
+		if (stem == null) {
+			stem = stemmer.stem(word).toString();
+			cache.put(word, stem);
+		}
+		return stem;
+	}
+
+	/**
+	 * @return the cache of stems
+	 */
+	public StemCache getCache() {
+		return cache;
+	}
+}
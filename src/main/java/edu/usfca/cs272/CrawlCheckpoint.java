@@ -0,0 +1,307 @@
+package edu.usfca.cs272;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Saves the state of a crawl to local disk, so that a crawl that dies partway
+ * through can resume without fetching the pages it already indexed again.
+ *
+ * Every checkpoint is written to a directory of its own, numbered one past the
+ * latest one, holding the index in the format of
+ * {@link InvertedIndex#writeBinary(Path)} and the crawl state below. The
+ * directory is written under a temporary name and only renamed once complete,
+ * so a crash while saving leaves the previous checkpoint in place. Older
+ * checkpoints are deleted after a new one is saved.
+ *
+ * <p>
+ * The crawl state uses big-endian ints throughout:
+ *
+ * <pre>
+ * magic, version
+ * crawl limit, number of URLs admitted
+ * number of URLs seen, 64-bit fingerprint of each URL seen
+ * number of URLs pending
+ *   per URL pending: URL length, UTF-8 URL
+ * </pre>
+ *
+ * URLs pending were admitted but not indexed yet, whether they were waiting,
+ * being fetched, or waiting to be indexed.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class CrawlCheckpoint {
+	/** Marks the start of a crawl state file ("SECK"). */
+	public static final int MAGIC = 0x5345434B;
+
+	/** Version of the file format. */
+	public static final int VERSION = 2;
+
+	/** Default time in milliseconds between checkpoints. */
+	public static final long DEFAULT_INTERVAL = 60_000;
+
+	/** Prefix of the name of every checkpoint directory. */
+	private static final String PREFIX = "checkpoint-";
+
+	/** Name of the index file within a checkpoint. */
+	private static final String INDEX = "index.bin";
+
+	/** Name of the crawl state file within a checkpoint. */
+	private static final String CRAWL = "crawl.bin";
+
+	/**
+	 * Initalize directory holding the checkpoints
+	 */
+	private final Path directory;
+
+	/**
+	 * Initalize time in milliseconds between checkpoints
+	 */
+	private final long interval;
+
+	/**
+	 * Constructor with the default interval
+	 *
+	 * @param directory the directory to hold the checkpoints
+	 */
+	public CrawlCheckpoint(Path directory) {
+		this(directory, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory the directory to hold the checkpoints
+	 * @param interval  the time in milliseconds between checkpoints
+	 */
+	public CrawlCheckpoint(Path directory, long interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+		}
+		this.directory = directory;
+		this.interval = interval;
+	}
+
+	/**
+	 * @return the directory holding the checkpoints
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the time in milliseconds between checkpoints
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Saves a checkpoint. The caller must make sure the crawl does not change
+	 * while saving, or the index and the URLs pending may not agree.
+	 *
+	 * @param index    the index of the pages crawled
+	 * @param frontier the frontier of the crawl
+	 * @param pending  the URLs admitted but not indexed yet
+	 * @throws IOException if unable to write the checkpoint
+	 */
+	public void save(InvertedIndex index, CrawlFrontier frontier, Collection<String> pending) throws IOException {
+		save(capture(index, frontier, pending));
+	}
+
+	/**
+	 * Captures the crawl state, to be saved later by {@link #save(State)}. Only
+	 * capturing needs the crawl to hold still, so the caller can let the crawl go
+	 * on while the state is saved, as long as the index given does not change,
+	 * such as a copy from {@link InvertedIndex#copy()}.
+	 *
+	 * @param index    the index of the pages crawled, which must not change
+	 *                 until the state is saved
+	 * @param frontier the frontier of the crawl
+	 * @param pending  the URLs admitted but not indexed yet
+	 * @return the captured state
+	 * @throws IOException if unable to write the crawl state
+	 */
+	public static State capture(InvertedIndex index, CrawlFrontier frontier, Collection<String> pending)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			frontier.write(out);
+			out.writeInt(pending.size());
+			for (String url : pending) {
+				byte[] encoded = url.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(encoded.length);
+				out.write(encoded);
+			}
+		}
+		return new State(index, bytes.toByteArray());
+	}
+
+	/**
+	 * Saves a checkpoint of a captured crawl state.
+	 *
+	 * @param state the state from {@link #capture(InvertedIndex, CrawlFrontier, Collection)}
+	 * @throws IOException if unable to write the checkpoint
+	 */
+	public void save(State state) throws IOException {
+		Files.createDirectories(directory);
+		List<Path> old = checkpoints();
+		long number = old.isEmpty() ? 1 : number(old.get(old.size() - 1)) + 1;
+		Path target = directory.resolve(PREFIX + number);
+		Path temp = directory.resolve(PREFIX + number + ".tmp");
+		delete(temp);
+		Files.createDirectory(temp);
+
+		state.index.writeBinary(temp.resolve(INDEX));
+		Files.write(temp.resolve(CRAWL), state.crawl);
+		Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+		for (Path checkpoint : old) {
+			delete(checkpoint);
+		}
+	}
+
+	/**
+	 * Loads the latest checkpoint, adding the pages it indexed to the index and
+	 * restoring the URLs seen by the frontier. The URLs pending are returned for
+	 * the crawler to queue again.
+	 *
+	 * @param index    the index to add the pages indexed to
+	 * @param frontier the frontier to restore
+	 * @return the URLs admitted but not indexed when the checkpoint was saved
+	 * @throws IOException if there is no checkpoint or it cannot be read
+	 */
+	public List<String> load(InvertedIndex index, CrawlFrontier frontier) throws IOException {
+		List<Path> checkpoints = checkpoints();
+		if (checkpoints.isEmpty()) {
+			throw new NoSuchFileException(directory.toString(), null, "No crawl checkpoint found");
+		}
+		Path latest = checkpoints.get(checkpoints.size() - 1);
+
+		List<String> pending;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(latest.resolve(CRAWL))))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " crawl checkpoint: " + latest);
+			}
+			frontier.read(in);
+			int size = in.readInt();
+			pending = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				pending.add(new String(bytes, StandardCharsets.UTF_8));
+			}
+		}
+		// read rather than mapped, so no mapping of the file outlives the load
+		index.addAll(MappedIndex.read(latest.resolve(INDEX)));
+		return pending;
+	}
+
+	/**
+	 * @return true if a checkpoint was saved
+	 * @throws IOException if unable to list the directory
+	 */
+	public boolean exists() throws IOException {
+		return !checkpoints().isEmpty();
+	}
+
+	/**
+	 * Lists the complete checkpoints, oldest first.
+	 *
+	 * @return the checkpoint directories
+	 * @throws IOException if unable to list the directory
+	 */
+	private List<Path> checkpoints() throws IOException {
+		List<Path> checkpoints = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return checkpoints;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*")) {
+			for (Path path : stream) {
+				if (number(path) > 0 && Files.isDirectory(path)) {
+					checkpoints.add(path);
+				}
+			}
+		}
+		checkpoints.sort(Comparator.comparingLong(CrawlCheckpoint::number));
+		return checkpoints;
+	}
+
+	/**
+	 * @param checkpoint the checkpoint directory
+	 * @return the number of the checkpoint, or -1 if the name is not a complete
+	 *         checkpoint
+	 */
+	private static long number(Path checkpoint) {
+		String name = checkpoint.getFileName().toString().substring(PREFIX.length());
+		try {
+			return Long.parseLong(name);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Deletes a checkpoint directory and its files, if it exists.
+	 *
+	 * @param path the directory to delete
+	 * @throws IOException if unable to delete
+	 */
+	private static void delete(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return;
+		}
+		try (Stream<Path> files = Files.list(path)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.deleteIfExists(file);
+			}
+		}
+		Files.deleteIfExists(path);
+	}
+
+	@Override
+	public String toString() {
+		return "CrawlCheckpoint[directory=" + directory + ", interval=" + interval + "]";
+	}
+
+	/**
+	 * A crawl captured to be saved, holding the index and the crawl state file.
+	 */
+	public static class State {
+		/** Initalize index of the pages crawled */
+		private final InvertedIndex index;
+
+		/** Initalize contents of the crawl state file */
+		private final byte[] crawl;
+
+		/**
+		 * Constructor
+		 *
+		 * @param index the index of the pages crawled
+		 * @param crawl the contents of the crawl state file
+		 */
+		private State(InvertedIndex index, byte[] crawl) {
+			this.index = index;
+			this.crawl = crawl;
+		}
+	}
+}
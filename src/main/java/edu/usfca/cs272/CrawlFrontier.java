@@ -0,0 +1,471 @@
+package edu.usfca.cs272;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * URLs waiting to be crawled, kept in a first-in first-out queue per host. A
+ * host is ready while it has URLs waiting, fewer fetches in flight than the
+ * per-host limit, and its last fetch started at least the minimum delay ago.
+ * The delay counts from when a fetch actually starts, as reported by
+ * {@link #started(String)}, not from when its URL was taken, so a URL that
+ * waits for a worker after it is taken does not shorten the delay; while a URL
+ * of a host with a delay is taken but not started, the host is not ready.
+ * {@link #poll()} takes URLs from the ready hosts in turn and never waits, so a
+ * throttled host never holds up a worker; hosts that are only waiting out their
+ * delay are kept apart, ordered by when they become ready. A host with nothing
+ * waiting or in flight is forgotten once its delay has passed, so a broad crawl
+ * only keeps the hosts it is still fetching from.
+ *
+ * URLs are expected in the form given by the {@link UrlCanonicalizer} of the
+ * frontier. Every URL is only admitted once, and only until the crawl limit is reached.
+ * URLs already seen are turned away by the {@link UrlSeenSet} before taking the
+ * lock of the frontier, which every other method is synchronized on.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class CrawlFrontier {
+	/** Default most fetches in flight per host. */
+	public static final int DEFAULT_MAX_PER_HOST = HttpConnectionPool.DEFAULT_MAX_PER_HOST;
+
+	/**
+	 * Initalize most URLs admitted in total
+	 */
+	private int limit;
+
+	/**
+	 * Initalize most fetches in flight per host
+	 */
+	private final int maxPerHost;
+
+	/**
+	 * Initalize minimum time in nanoseconds between fetches from one host
+	 */
+	private final long delay;
+
+	/**
+	 * Initalize canonicalizer giving the form of the URLs admitted
+	 */
+	private final UrlCanonicalizer canonicalizer;
+
+	/**
+	 * Initalize every URL admitted so far
+	 */
+	private final UrlSeenSet seen;
+
+	/**
+	 * Initalize number of URLs admitted
+	 */
+	private int admitted;
+
+	/**
+	 * Initalize hosts by key
+	 */
+	private final HashMap<String, Host> hosts;
+
+	/**
+	 * Initalize hosts ready to fetch from, in turn
+	 */
+	private final ArrayDeque<Host> ready;
+
+	/**
+	 * Initalize hosts waiting out their delay, soonest first
+	 */
+	private final PriorityQueue<Host> waiting;
+
+	/**
+	 * Initalize hosts with nothing waiting or in flight, to forget once their
+	 * delay has passed, in the order they became idle
+	 */
+	private final ArrayDeque<Host> idle;
+
+	/**
+	 * Initalize number of URLs admitted but not yet taken
+	 */
+	private int queued;
+
+	/**
+	 * Constructor with the default per-host limit and no delay
+	 *
+	 * @param limit the most URLs to admit
+	 */
+	public CrawlFrontier(int limit) {
+		this(limit, DEFAULT_MAX_PER_HOST, 0);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param limit      the most URLs to admit
+	 * @param maxPerHost the most fetches in flight per host
+	 * @param delay      the minimum time in milliseconds between the start of two
+	 *                   fetches from one host
+	 */
+	public CrawlFrontier(int limit, int maxPerHost, long delay) {
+		this(limit, maxPerHost, delay, new UrlSeenSet(), UrlCanonicalizer.DEFAULT);
+	}
+
+	/**
+	 * Constructor that records the URLs admitted in the given set, and takes
+	 * URLs canonicalized by the given canonicalizer
+	 *
+	 * @param limit         the most URLs to admit
+	 * @param maxPerHost    the most fetches in flight per host
+	 * @param delay         the minimum time in milliseconds between the start of
+	 *                      two fetches from one host
+	 * @param seen          the set of URLs seen, usually empty
+	 * @param canonicalizer the canonicalizer of the URLs admitted
+	 */
+	public CrawlFrontier(int limit, int maxPerHost, long delay, UrlSeenSet seen, UrlCanonicalizer canonicalizer) {
+		if (maxPerHost <= 0) {
+			throw new IllegalArgumentException("Fetches per host must be positive: " + maxPerHost);
+		}
+		this.limit = limit;
+		this.maxPerHost = maxPerHost;
+		this.delay = Math.max(0, delay) * 1_000_000;
+		this.seen = seen;
+		this.canonicalizer = canonicalizer;
+		this.admitted = 0;
+		this.hosts = new HashMap<>();
+		this.ready = new ArrayDeque<>();
+		this.waiting = new PriorityQueue<>((a, b) -> Long.compare(a.readyAt - b.readyAt, 0));
+		this.idle = new ArrayDeque<>();
+		this.queued = 0;
+	}
+
+	/**
+	 * Admits a URL if it was not seen before and the limit is not reached yet.
+	 *
+	 * @param url the canonical url to crawl
+	 * @return true if the url was admitted
+	 */
+	public boolean offer(String url) {
+		long fingerprint = UrlCanonicalizer.fingerprint(url);
+		if (seen.contains(fingerprint)) {
+			return false;
+		}
+		String key = key(url);
+		synchronized (this) {
+			if (admitted >= limit || !seen.add(fingerprint)) {
+				return false;
+			}
+			admitted++;
+			Host host = hosts.computeIfAbsent(key, Host::new);
+			host.urls.add(url);
+			queued++;
+			schedule(host, System.nanoTime());
+			return true;
+		}
+	}
+
+	/**
+	 * Queues a URL that was admitted before, such as a URL that was still waiting
+	 * or being fetched when a checkpoint was saved. The URL is queued even if it
+	 * was seen, and does not count towards the limit again.
+	 *
+	 * @param url the canonical url to crawl
+	 */
+	public synchronized void requeue(String url) {
+		seen.add(url);
+		Host host = hosts.computeIfAbsent(key(url), Host::new);
+		host.urls.add(url);
+		queued++;
+		schedule(host, System.nanoTime());
+	}
+
+	/**
+	 * Takes the next URL from the next ready host, without waiting. The caller
+	 * must call {@link #started(String)} when the fetch starts and
+	 * {@link #done(String)} once it is over, or {@link #cancel(String)} if it never
+	 * starts.
+	 *
+	 * @return the url to fetch, or null if no host is ready
+	 */
+	public synchronized String poll() {
+		long now = System.nanoTime();
+		forget(now);
+		while (!waiting.isEmpty() && waiting.peek().readyAt - now <= 0) {
+			ready.add(waiting.poll());
+		}
+		Host host = ready.poll();
+		if (host == null) {
+			return null;
+		}
+		host.scheduled = false;
+		host.active++;
+		host.starting++;
+		queued--;
+		String url = host.urls.poll();
+		schedule(host, now);
+		return url;
+	}
+
+	/**
+	 * Marks the fetch of a URL from {@link #poll()} as started, which starts the
+	 * delay before the next fetch from its host.
+	 *
+	 * @param url the url being fetched
+	 * @return true if this made the host ready or start waiting out its delay, so
+	 *         the caller should take URLs again
+	 */
+	public synchronized boolean started(String url) {
+		Host host = host(url);
+		long now = System.nanoTime();
+		host.starting--;
+		host.started = now;
+		boolean scheduled = host.scheduled;
+		schedule(host, now);
+		return !scheduled && host.scheduled;
+	}
+
+	/**
+	 * Marks the fetch of a URL from {@link #poll()} as over.
+	 *
+	 * @param url the url fetched
+	 */
+	public synchronized void done(String url) {
+		Host host = host(url);
+		host.active--;
+		long now = System.nanoTime();
+		schedule(host, now);
+		retire(host, now);
+	}
+
+	/**
+	 * Gives back a URL from {@link #poll()} whose fetch never started. The delay
+	 * of its host is left as it was.
+	 *
+	 * @param url the url not fetched
+	 */
+	public synchronized void cancel(String url) {
+		Host host = host(url);
+		host.starting--;
+		host.active--;
+		long now = System.nanoTime();
+		schedule(host, now);
+		retire(host, now);
+	}
+
+	/**
+	 * @param url a url taken from this frontier
+	 * @return the host of the url
+	 */
+	private Host host(String url) {
+		Host host = hosts.get(key(url));
+		if (host == null) {
+			throw new IllegalArgumentException("Not a url from this frontier: " + url);
+		}
+		return host;
+	}
+
+	/**
+	 * Forgets a host with nothing waiting or in flight once its delay has passed,
+	 * or remembers to forget it later.
+	 *
+	 * @param host the host
+	 * @param now  the current time from {@link System#nanoTime()}
+	 */
+	private void retire(Host host, long now) {
+		if (host.retiring || host.scheduled || host.active > 0 || !host.urls.isEmpty()) {
+			return;
+		}
+		if (host.started + delay - now <= 0) {
+			hosts.remove(host.key, host);
+		} else {
+			host.retiring = true;
+			idle.add(host);
+		}
+	}
+
+	/**
+	 * Forgets the idle hosts whose delay has passed, unless they were given URLs
+	 * again in the meantime.
+	 *
+	 * @param now the current time from {@link System#nanoTime()}
+	 */
+	private void forget(long now) {
+		while (!idle.isEmpty() && idle.peek().started + delay - now <= 0) {
+			Host host = idle.poll();
+			host.retiring = false;
+			retire(host, now);
+		}
+	}
+
+	/**
+	 * Queues a host as ready or waiting, if it has URLs to fetch, room for
+	 * another fetch, and no fetch it must wait out the delay of that has not
+	 * started yet.
+	 *
+	 * @param host the host
+	 * @param now  the current time from {@link System#nanoTime()}
+	 */
+	private void schedule(Host host, long now) {
+		if (host.scheduled || host.urls.isEmpty() || host.active >= maxPerHost || (delay > 0 && host.starting > 0)) {
+			return;
+		}
+		host.scheduled = true;
+		host.readyAt = host.started + delay;
+		if (host.readyAt - now <= 0) {
+			ready.add(host);
+		} else {
+			waiting.add(host);
+		}
+	}
+
+	/**
+	 * Returns how long until a waiting host becomes ready.
+	 *
+	 * @return the time in nanoseconds, 0 if a host is ready now, or -1 if no host
+	 *         is ready or waiting
+	 */
+	public synchronized long nextReady() {
+		if (!ready.isEmpty()) {
+			return 0;
+		}
+		if (waiting.isEmpty()) {
+			return -1;
+		}
+		return Math.max(0, waiting.peek().readyAt - System.nanoTime());
+	}
+
+	/**
+	 * @param url the url
+	 * @return true if the url was admitted
+	 */
+	public boolean contains(String url) {
+		return seen.contains(url);
+	}
+
+	/**
+	 * @return the number of URLs admitted
+	 */
+	public synchronized int size() {
+		return admitted;
+	}
+
+	/**
+	 * @return the number of hosts with URLs waiting, fetches in flight, or a delay
+	 *         that has not passed yet
+	 */
+	public synchronized int hosts() {
+		return hosts.size();
+	}
+
+	/**
+	 * @return the number of URLs admitted but not yet taken
+	 */
+	public synchronized int queued() {
+		return queued;
+	}
+
+	/**
+	 * Changes the most URLs to admit in total.
+	 *
+	 * @param limit the most URLs to admit
+	 */
+	public synchronized void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Writes the limit, the number of URLs admitted, and every URL seen. The URLs
+	 * still queued are not written, since the crawler also needs the URLs being
+	 * fetched and indexed to resume; it saves them itself and queues them again
+	 * with {@link #requeue(String)}.
+	 *
+	 * @param out the output to write to
+	 * @throws IOException if unable to write
+	 * @see CrawlCheckpoint
+	 */
+	public synchronized void write(DataOutput out) throws IOException {
+		out.writeInt(limit);
+		out.writeInt(admitted);
+		seen.write(out);
+	}
+
+	/**
+	 * Restores the limit, the number of URLs admitted, and the URLs seen written
+	 * by {@link #write(DataOutput)}.
+	 *
+	 * @param in the input to read from
+	 * @throws IOException if unable to read
+	 */
+	public synchronized void read(DataInput in) throws IOException {
+		limit = in.readInt();
+		admitted = in.readInt();
+		seen.read(in);
+	}
+
+	/**
+	 * @return the canonicalizer giving the form of the URLs admitted
+	 */
+	public UrlCanonicalizer getCanonicalizer() {
+		return canonicalizer;
+	}
+
+	/**
+	 * Returns the host and port of a canonical URL, which are already in
+	 * lowercase and without the default port.
+	 *
+	 * @param url the canonical url
+	 * @return the key of the host of the url
+	 */
+	private static String key(String url) {
+		int start = url.indexOf("://");
+		if (start < 0) {
+			throw new IllegalArgumentException("Not a canonical url: " + url);
+		}
+		int end = url.indexOf('/', start + 3);
+		return url.substring(start + 3, end < 0 ? url.length() : end);
+	}
+
+	/**
+	 * URLs waiting for one host, and the fetches in flight from it.
+	 */
+	private class Host {
+		/** Initalize key of the host */
+		private final String key;
+
+		/** Initalize URLs waiting, oldest first */
+		private final ArrayDeque<String> urls;
+
+		/** Initalize number of fetches in flight, started or not */
+		private int active;
+
+		/** Initalize number of URLs taken whose fetch has not started */
+		private int starting;
+
+		/** Initalize start of the last fetch, from {@link System#nanoTime()} */
+		private long started;
+
+		/** Initalize time the host becomes ready while waiting */
+		private long readyAt;
+
+		/** Initalize whether the host is ready or waiting */
+		private boolean scheduled;
+
+		/** Initalize whether the host is idle and waiting to be forgotten */
+		private boolean retiring;
+
+		/**
+		 * Constructor
+		 *
+		 * @param key the key of the host
+		 */
+		private Host(String key) {
+			this.key = key;
+			this.urls = new ArrayDeque<>();
+			this.active = 0;
+			this.starting = 0;
+			this.started = System.nanoTime() - delay;
+			this.scheduled = false;
+			this.retiring = false;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Collects the words of a single document while it is parsed, before it is
+ * added to an {@link InvertedIndex}. Each word maps to a growable array of its
+ * positions in a hash map, so adding a word is one hash lookup and an array
+ * store instead of lookups in sorted maps. The words are only sorted once, in
+ * bulk, when the document is merged with
+ * {@link InvertedIndex#addAll(DocumentAccumulator)}.
+ *
+ * Positions are numbered from 1 in the order words are added, so the number of
+ * words added is the word count of the document. An accumulator is not safe to
+ * share between threads.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class DocumentAccumulator {
+	/** Capacity of the positions of a word when it is first added. */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * Initalize location of the document
+	 */
+	private final String location;
+
+	/**
+	 * Initalize positions of each word
+	 */
+	private final HashMap<String, Positions> words;
+
+	/**
+	 * Initalize number of words added, which is also the last position
+	 */
+	private int length;
+
+	/**
+	 * Constructor
+	 *
+	 * @param location the location of the document
+	 */
+	public DocumentAccumulator(String location) {
+		this.location = location;
+		this.words = new HashMap<>();
+		this.length = 0;
+	}
+
+	/**
+	 * Adds the next word of the document, at the position after the last word.
+	 *
+	 * @param word the word to add
+	 */
+	public void add(String word) {
+		Positions positions = words.get(word);
+		if (positions == null) {
+			positions = new Positions(word);
+			words.put(word, positions);
+		}
+		positions.add(++length);
+	}
+
+	/**
+	 * @return the location of the document
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * @return the number of words added, which is the word count of the document
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return the number of distinct words added
+	 */
+	public int size() {
+		return words.size();
+	}
+
+	/**
+	 * @return true if no words were added
+	 */
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	/**
+	 * Visits every distinct word in sorted order with its encoded positions.
+	 *
+	 * @param visitor the visitor of each word
+	 */
+	public void visitSorted(PostingVisitor visitor) {
+		Positions[] sorted = words.values().toArray(new Positions[0]);
+		Arrays.sort(sorted, Comparator.comparing((Positions positions) -> positions.word));
+		for (Positions positions : sorted) {
+			visitor.visit(positions.word, PositionList.of(positions.positions, positions.count));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentAccumulator[location=" + location + ", length=" + length + ", words=" + words.size() + "]";
+	}
+
+	/**
+	 * Visitor of the positions of each word in a document.
+	 */
+	public static interface PostingVisitor {
+		/**
+		 * Visits the positions of a word.
+		 *
+		 * @param word      the word
+		 * @param positions the positions of the word in the document
+		 */
+		public void visit(String word, PositionList positions);
+	}
+
+	/**
+	 * Growable array of the positions of one word, in increasing order.
+	 */
+	private static class Positions {
+		/** Initalize word */
+		private final String word;
+
+		/** Initalize positions, of which only the first count are used */
+		private int[] positions;
+
+		/** Initalize number of positions */
+		private int count;
+
+		/**
+		 * Constructor
+		 *
+		 * @param word the word
+		 */
+		private Positions(String word) {
+			this.word = word;
+			this.positions = new int[INITIAL_CAPACITY];
+			this.count = 0;
+		}
+
+		/**
+		 * Appends a position larger than every other position.
+		 *
+		 * @param position the position
+		 */
+		private void add(int position) {
+			if (count == positions.length) {
+				positions = Arrays.copyOf(positions, count * 2);
+			}
+			positions[count++] = position;
+		}
+	}
+}
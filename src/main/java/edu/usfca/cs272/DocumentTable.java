@@ -0,0 +1,142 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table that assigns each document location (file path or URL) a dense integer
+ * ID the first time it is seen. Indexes store these IDs instead of the location
+ * strings, and only turn them back into locations when results are rendered.
+ *
+ * IDs are never removed or reassigned, so a table may safely be shared by
+ * several indexes (for example a thread-safe index and the local indexes built
+ * by its workers). Lookups do not lock.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class DocumentTable {
+	/** Initial capacity of the location array. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Maps each location to its ID. */
+	private final Map<String, Integer> ids;
+
+	/** Locations indexed by ID. Replaced (never shrunk) when it grows. */
+	private volatile String[] locations;
+
+	/** Number of assigned IDs. Written after the location it publishes. */
+	private volatile int size;
+
+	/** Object used exclusively to serialize new IDs. */
+	private final Object lock;
+
+	/**
+	 * Initializes an empty document table.
+	 */
+	public DocumentTable() {
+		ids = new ConcurrentHashMap<>();
+		locations = new String[INITIAL_CAPACITY];
+		size = 0;
+		lock = new Object();
+	}
+
+	/**
+	 * Returns the ID of the location, assigning the next ID if the location has
+	 * not been seen before.
+	 *
+	 * @param location the document location
+	 * @return the ID of the location
+	 */
+	public int add(String location) {
+		Integer id = ids.get(location);
+		if (id != null) {
+			return id;
+		}
+		synchronized (lock) {
+			id = ids.get(location);
+			if (id != null) {
+				return id;
+			}
+			int next = size;
+			String[] current = locations;
+			if (next == current.length) {
+				current = Arrays.copyOf(current, current.length * 2);
+				locations = current;
+			}
+			current[next] = location;
+			ids.put(location, next);
+			size = next + 1;
+			return next;
+		}
+	}
+
+	/**
+	 * Returns a copy of the table. IDs assigned later by either table are not seen
+	 * by the other.
+	 *
+	 * @return the copy
+	 */
+	public DocumentTable copy() {
+		synchronized (lock) {
+			DocumentTable copy = new DocumentTable();
+			copy.ids.putAll(ids);
+			copy.locations = Arrays.copyOf(locations, locations.length);
+			copy.size = size;
+			return copy;
+		}
+	}
+
+	/**
+	 * Returns the ID of the location.
+	 *
+	 * @param location the document location
+	 * @return the ID of the location or -1 if it has not been seen
+	 */
+	public int indexOf(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Checks if the location has been assigned an ID.
+	 *
+	 * @param location the document location
+	 * @return true if the location has an ID
+	 */
+	public boolean contains(String location) {
+		return ids.containsKey(location);
+	}
+
+	/**
+	 * Returns the location with the given ID.
+	 *
+	 * @param id the document ID
+	 * @return the location of the document
+	 * @throws IndexOutOfBoundsException if the ID has not been assigned
+	 */
+	public String location(int id) {
+		int assigned = size;
+		if (id < 0 || id >= assigned) {
+			throw new IndexOutOfBoundsException("Unknown document ID: " + id);
+		}
+		return locations[id];
+	}
+
+	/**
+	 * Returns the number of assigned IDs. Every ID is less than this value.
+	 *
+	 * @return the number of documents in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		int assigned = size;
+		return Arrays.toString(Arrays.copyOf(locations, assigned));
+	}
+}
@@ -23,12 +23,12 @@ public class DownloadServlet extends HttpServlet {
 	/**
 	 * initalize index
 	 */
-	private ThreadSafeIndex index;
+	private InvertedIndex index;
 
 	/**
-	 * @param current index to link the servlet to
+	 * @param current index to link the servlet to, safe for concurrent reads
 	 */
-	public DownloadServlet(ThreadSafeIndex current) {
+	public DownloadServlet(InvertedIndex current) {
 		super();
 		this.index = current;
 	}
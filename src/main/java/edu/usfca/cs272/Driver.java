@@ -33,26 +33,63 @@ public class Driver {
 		ArgumentParser argue = new ArgumentParser(args);
 		InvertedIndex index;
 		QueryInterface query;
-		WorkQueue queue = null;
+		TaskQueue queue = null;
 		ThreadSafeIndex safe = null;
 		WebCrawler crawler = null;
 
+		StemmerProvider stemmers = StemmerProvider.ENGLISH;
+		if (argue.hasFlag("-stemmer")) {
+			try {
+				stemmers = StemmerProvider.forName(argue.getString("-stemmer", "english"));
+			} catch (IllegalArgumentException e) {
+				System.err.println("-stemmer flag error! Unknown stemming algorithm provided!");
+				return;
+			}
+		}
+
+		QueryCache cache = new QueryCache();
+		if (argue.hasFlag("-cache")) {
+			int weight = argue.getInteger("-cache", QueryCache.DEFAULT_WEIGHT);
+			if (weight <= 0) {
+				weight = QueryCache.DEFAULT_WEIGHT;
+			}
+			String policy = argue.getString("-eviction", "lru");
+			cache = new QueryCache(weight,
+					policy.equalsIgnoreCase("lfu") ? QueryCache.Eviction.LFU : QueryCache.Eviction.LRU);
+		}
+
 		if (argue.hasFlag("-threads") || argue.hasFlag("-html") || argue.hasFlag("-server")) {
 			index = new ThreadSafeIndex();
 			int threads = argue.getInteger("-threads", 5);
 			if (threads <= 0) {
 				threads = 5;
 			}
-			queue = new WorkQueue(threads);
-			safe = new ThreadSafeIndex();
-			query = new ThreadedQueryProcessor(safe, queue);
+			queue = argue.hasFlag("-stealing") ? new StealingWorkQueue(threads) : new WorkQueue(threads);
+			safe = argue.hasFlag("-snapshot") ? new SnapshotIndex() : new ThreadSafeIndex();
+			query = new ThreadedQueryProcessor(safe, queue, cache, stemmers);
 			index = safe;
 		} else {
 			index = new InvertedIndex();
-			query = new QueryProcessor(index);
+			query = new QueryProcessor(index, cache, stemmers);
 		}
 
-		if (argue.hasFlag("-html")) {
+		boolean loaded = false;
+		if (argue.hasFlag("-load")) {
+			Path fileLoad = argue.getPath("-load", Path.of("index.bin"));
+			try {
+				index = MappedIndex.open(fileLoad);
+				query = queue != null ? new ThreadedQueryProcessor(index, queue, cache, stemmers)
+						: new QueryProcessor(index, cache, stemmers);
+				loaded = true;
+			} catch (IOException e) {
+				System.err.println("Error loading index file. (Path after -load flag)");
+				return;
+			}
+		}
+
+		if (loaded && (argue.hasFlag("-html") || argue.hasFlag("-text"))) {
+			System.err.println("Loaded indexes are read-only! Ignoring -html and -text flags.");
+		} else if (argue.hasFlag("-html")) {
 			try {
 				String seedUrl = argue.getString("-html");
 				int limit = 1;
@@ -60,7 +97,91 @@ public class Driver {
 				if (limit <= 0) {
 					limit = 1;
 				}
-				crawler = new WebCrawler((ThreadSafeIndex) index, queue, limit);
+				HttpConnectionPool pool = HtmlFetcher.getPool();
+				if (argue.hasFlag("-timeout") || argue.hasFlag("-maxbody")) {
+					int timeout = argue.getInteger("-timeout", 30);
+					if (timeout <= 0) {
+						timeout = 30;
+					}
+					long maxBody = argue.getInteger("-maxbody", 10 * 1024 * 1024);
+					if (maxBody <= 0) {
+						maxBody = 10 * 1024 * 1024;
+					}
+					int millis = timeout * 1000;
+					pool = new HttpConnectionPool(HttpConnectionPool.DEFAULT_MAX_PER_HOST,
+							HttpConnectionPool.DEFAULT_IDLE_TIMEOUT, Math.min(millis, HttpConnectionPool.DEFAULT_CONNECT_TIMEOUT),
+							Math.min(millis, HttpConnectionPool.DEFAULT_READ_TIMEOUT), millis, maxBody);
+				}
+				int perHost = argue.getInteger("-perhost", CrawlFrontier.DEFAULT_MAX_PER_HOST);
+				if (perHost <= 0) {
+					perHost = CrawlFrontier.DEFAULT_MAX_PER_HOST;
+				}
+				int delay = argue.getInteger("-delay", 0);
+				if (delay < 0) {
+					delay = 0;
+				}
+				UrlSeenSet seen = argue.hasFlag("-bloom") ? new UrlSeenSet(limit, 0.01) : new UrlSeenSet();
+				UrlCanonicalizer.QueryPolicy queries = UrlCanonicalizer.QueryPolicy.DROP;
+				String policy = argue.getString("-querypolicy", "drop");
+				if (policy.equalsIgnoreCase("keep")) {
+					queries = UrlCanonicalizer.QueryPolicy.KEEP;
+				} else if (policy.equalsIgnoreCase("sort")) {
+					queries = UrlCanonicalizer.QueryPolicy.SORT;
+				}
+				CrawlFrontier frontier = new CrawlFrontier(limit, perHost, delay, seen, new UrlCanonicalizer(queries));
+				if (argue.hasFlag("-pipeline")) {
+					int capacity = argue.getInteger("-pipeline", 64);
+					if (capacity <= 0) {
+						capacity = 64;
+					}
+					int inFlight = argue.getInteger("-virtual", 100);
+					if (inFlight <= 0) {
+						inFlight = 100;
+					}
+					int parsers = argue.getInteger("-threads", 5);
+					if (parsers <= 0) {
+						parsers = 5;
+					}
+					int indexers = argue.getInteger("-indexers", 1);
+					if (indexers <= 0) {
+						indexers = 1;
+					}
+					crawler = new WebCrawler((ThreadSafeIndex) index, frontier, inFlight, parsers, indexers, capacity, pool);
+				} else if (argue.hasFlag("-virtual")) {
+					int inFlight = argue.getInteger("-virtual", 100);
+					if (inFlight <= 0) {
+						inFlight = 100;
+					}
+					crawler = new WebCrawler((ThreadSafeIndex) index, queue, frontier, inFlight, pool);
+				} else {
+					crawler = new WebCrawler((ThreadSafeIndex) index, queue, frontier, pool);
+				}
+				crawler.setStemmers(stemmers);
+				if (argue.hasFlag("-checkpoint") || argue.hasFlag("-resume")) {
+					int interval = argue.getInteger("-interval", 60);
+					if (interval <= 0) {
+						interval = 60;
+					}
+					CrawlCheckpoint checkpoint = new CrawlCheckpoint(argue.getPath("-checkpoint", Path.of("checkpoint")),
+							interval * 1000L);
+					if (argue.hasFlag("-resume")) {
+						try {
+							if (checkpoint.exists()) {
+								int resumed = crawler.resume(checkpoint);
+								System.out.println("Resumed crawl with " + resumed + " pending urls");
+								if (argue.hasFlag("-crawl")) {
+									frontier.setLimit(limit);
+								}
+							} else {
+								System.out.println("No crawl checkpoint found. Starting a new crawl.");
+							}
+						} catch (IOException e) {
+							System.err.println("Error resuming crawl from checkpoint. (Path after -checkpoint flag)");
+							return;
+						}
+					}
+					crawler.setCheckpoint(checkpoint);
+				}
 				crawler.crawl(seedUrl);
 			} catch (IllegalArgumentException e) {
 				System.err.println("-html flag error! Invalid URL provided!");
@@ -71,12 +192,12 @@ public class Driver {
 			}
 		}
 
-		if (argue.hasFlag("-text") && argue.getPath("-text") != null) {
+		if (!loaded && argue.hasFlag("-text") && argue.getPath("-text") != null) {
 			try {
 				if (safe != null && queue != null) {
-					ThreadSafeIndexBuilder.build(argue.getPath("-text"), (ThreadSafeIndex) index, queue);
+					ThreadSafeIndexBuilder.build(argue.getPath("-text"), (ThreadSafeIndex) index, queue, stemmers);
 				} else {
-					InvertedIndexBuilder.build(argue.getPath("-text"), index);
+					InvertedIndexBuilder.build(argue.getPath("-text"), index, stemmers);
 				}
 			} catch (IOException e) {
 				System.err.println("Error reading from file! (Path after -text flag)");
@@ -104,8 +225,8 @@ public class Driver {
 			context.setContextPath("/");
 			context.addServlet(new ServletHolder(new SearchServlet((ThreadedQueryProcessor) query)), "/welcome");
 			context.addServlet(new ServletHolder(new CrawlerServlet(crawler)), "/add-url");
-			context.addServlet(new ServletHolder(new IndexServlet((ThreadSafeIndex) index)), "/index");
-			context.addServlet(new ServletHolder(new DownloadServlet((ThreadSafeIndex) index)), "/download");
+			context.addServlet(new ServletHolder(new IndexServlet(index)), "/index");
+			context.addServlet(new ServletHolder(new DownloadServlet(index)), "/download");
 			server.setHandler(context);
 			try {
 				server.start();
@@ -132,6 +253,15 @@ public class Driver {
 			queue.finish();
 		}
 
+		if (argue.hasFlag("-save")) {
+			Path fileSave = argue.getPath("-save", Path.of("index.bin"));
+			try {
+				index.writeBinary(fileSave);
+			} catch (IOException e) {
+				System.err.println("Error writing binary index file. (Path after -save flag)");
+			}
+		}
+
 		if (argue.hasFlag("-results")) {
 			Path fileResults = argue.getPath("-results", Path.of("results.json"));
 			try {
@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -58,16 +57,22 @@ public class FileStemmer {
 	}
 
 	/**
-	 * Parses the text into an array of clean words.
+	 * Parses the text into an array of clean words. Gives the same words as
+	 * splitting the cleaned text, but in a single pass with a {@link Tokenizer}.
 	 *
 	 * @param text the text to clean and split
 	 * @return an array of {@link String} objects
 	 *
 	 * @see #clean(String)
-	 * @see #parse(String)
+	 * @see #split(String)
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+		ArrayList<String> words = new ArrayList<>();
+		Tokenizer tokenizer = new Tokenizer().reset(text);
+		while (tokenizer.next()) {
+			words.add(tokenizer.word().toString());
+		}
+		return words.toArray(new String[words.size()]);
 	}
 
 	/**
@@ -83,8 +88,9 @@ public class FileStemmer {
 	 * @see Collection#add(Object)
 	 */
 	public static void addStems(String line, Stemmer stemmer, Collection<String> stems) {
-		for (String word : parse(line)) {
-			String stemmed = stemmer.stem(word).toString();
+		Tokenizer tokenizer = new Tokenizer().reset(line);
+		while (tokenizer.next()) {
+			String stemmed = stemmer.stem(tokenizer.word()).toString();
 			stems.add(stemmed);
 		}
 	}
@@ -118,7 +124,7 @@ public class FileStemmer {
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmerProvider.ENGLISH.get();
 		return listStems(line, stemmer);
 	}
 
@@ -136,7 +142,7 @@ public class FileStemmer {
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(Path input) throws IOException {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmerProvider.ENGLISH.get();
 		ArrayList<String> stems = new ArrayList<>();
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			String line;
@@ -176,7 +182,7 @@ public class FileStemmer {
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmerProvider.ENGLISH.get();
 		return uniqueStems(line, stemmer);
 	}
 
@@ -194,7 +200,7 @@ public class FileStemmer {
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(Path input) throws IOException {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmerProvider.ENGLISH.get();
 		TreeSet<String> fileSet = new TreeSet<>();
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			String line;
@@ -222,7 +228,7 @@ public class FileStemmer {
 	 */
 	public static ArrayList<TreeSet<String>> listUniqueStems(Path input) throws IOException {
 		ArrayList<TreeSet<String>> uniqueStemsList = new ArrayList<>();
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmerProvider.ENGLISH.get();
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			String line = null;
 			while ((line = reader.readLine()) != null) {
@@ -130,34 +130,37 @@ public class HtmlCleaner {
 	 * Removes comments and certain block elements from the provided html. The block
 	 * elements removed include: head, style, script, noscript, iframe, and svg.
 	 *
+	 * <p>
+	 * Gives the same result as {@link #stripComments(String)} followed by
+	 * {@link #stripElement(String, String)} for each element, but scans the html
+	 * once instead of once per pass.
+	 *
 	 * @param html the HTML to strip comments and block elements from
 	 * @return text clean of any comments and certain HTML block elements
+	 *
+	 * @see HtmlScanner#stripBlockElements(String)
 	 */
 	public static String stripBlockElements(String html) {
-		html = stripComments(html);
-		html = stripElement(html, "head");
-		html = stripElement(html, "style");
-		html = stripElement(html, "script");
-		html = stripElement(html, "noscript");
-		html = stripElement(html, "iframe");
-		html = stripElement(html, "svg");
-		return html;
+		return HtmlScanner.stripBlockElements(html);
 	}
 
 	/**
 	 * Removes all HTML tags and certain block elements from the provided text.
 	 *
+	 * <p>
+	 * Gives the same result as {@link #stripBlockElements(String)},
+	 * {@link #stripTags(String)}, and {@link #stripEntities(String)} in turn, in a
+	 * single scan of the html.
+	 *
 	 * @see #stripBlockElements(String)
 	 * @see #stripTags(String)
+	 * @see HtmlScanner#stripHtml(String)
 	 *
 	 * @param html the HTML to strip tags and elements from
 	 * @return text clean of any HTML tags and certain block elements
 	 */
 	public static String stripHtml(String html) {
-		html = stripBlockElements(html);
-		html = stripTags(html);
-		html = stripEntities(html);
-		return html;
+		return HtmlScanner.stripHtml(html);
 	}
 
 }
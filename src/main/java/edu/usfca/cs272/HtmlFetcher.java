@@ -2,11 +2,14 @@ package edu.usfca.cs272;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.Socket;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
@@ -21,23 +24,49 @@ import java.util.Map;
  * @version Spring 2023
  */
 public class HtmlFetcher {
+	/** Size of the buffers used to decode bodies. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Connections shared by every fetch that does not use its own pool. */
+	private static final HttpConnectionPool POOL = new HttpConnectionPool();
+
 	/**
-	 * Returns {@code true} if and only if there is a "Content-Type" header and the
-	 * first value of that header starts with the value "text/html"
-	 * (case-insensitive).
+	 * Returns {@code true} if and only if there is a "Content-Type" header (named
+	 * in any case) and the first value of that header starts with the value
+	 * "text/html" (case-insensitive).
 	 *
 	 * @param headers the HTTP/1.1 headers to parse
 	 * @return {@code true} if the headers indicate the content type is HTML
 	 */
 	public static boolean isHtml(Map<String, List<String>> headers) {
-		List<String> contentTypes = headers.get("Content-Type");
-		if (contentTypes == null || contentTypes.isEmpty()) {
-			return false;
-		}
-		String contentType = contentTypes.get(0);
+		String contentType = HttpsFetcher.getHeader(headers, "Content-Type");
 		return contentType != null && contentType.toLowerCase().startsWith("text/html");
 	}
 
+	/**
+	 * Returns the charset named in the "Content-Type" header, or UTF-8 if there is
+	 * none or it is not supported.
+	 *
+	 * @param headers the HTTP/1.1 headers to parse
+	 * @return the charset of the content
+	 */
+	public static Charset getCharset(Map<String, List<String>> headers) {
+		String contentType = HttpsFetcher.getHeader(headers, "Content-Type");
+		if (contentType != null) {
+			for (String parameter : contentType.split(";")) {
+				String[] split = parameter.strip().split("=", 2);
+				if (split.length == 2 && split[0].strip().equalsIgnoreCase("charset")) {
+					try {
+						return Charset.forName(split[1].strip().replace("\"", "").replace("'", ""));
+					} catch (IllegalArgumentException e) {
+						break;
+					}
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
 	/**
 	 * Parses the HTTP status code from the provided HTTP headers, assuming the
 	 * status line is stored under the {@code null} key.
@@ -73,57 +102,213 @@ public class HtmlFetcher {
 	public static String getRedirect(Map<String, List<String>> headers) {
 		int statusCode = getStatusCode(headers);
 		if (statusCode >= 300 && statusCode < 400) {
-			List<String> locations = headers.get("Location");
-			if (locations != null && !locations.isEmpty()) {
-				return locations.get(0);
-			}
+			return HttpsFetcher.getHeader(headers, "Location");
 		}
 		return null;
 	}
 
+	/**
+	 * Returns the pool of connections used by fetches that do not pass their own.
+	 *
+	 * @return the shared connection pool
+	 */
+	public static HttpConnectionPool getPool() {
+		return POOL;
+	}
+
 	/**
 	 * Fetches the resource at the URL using HTTP/1.1 and sockets. If the status
 	 * code is 200 and the content type is HTML, returns the HTML as a single
 	 * string. If the status code is a valid redirect, will follow that redirect if
 	 * the number of redirects is greater than 0. Otherwise, returns {@code null}.
 	 *
+	 * Connections are kept open and reused for later fetches from the same host.
+	 * Fetches that time out or whose body is too large return {@code null}; see
+	 * {@link HttpConnectionPool} for the limits.
+	 *
 	 * @param url       the url to fetch
 	 * @param redirects the number of times to follow redirects
 	 * @return the html or {@code null} if unable to fetch the resource or the
 	 *         resource is not html
 	 *
-	 * @see HttpsFetcher#openConnection(URL)
-	 * @see HttpsFetcher#printGetRequest(PrintWriter, URL)
-	 * @see HttpsFetcher#getHeaderFields(BufferedReader)
+	 * @see #fetch(URL, int, HttpConnectionPool)
+	 */
+	public static String fetch(URL url, int redirects) {
+		return fetch(url, redirects, POOL);
+	}
+
+	/**
+	 * Fetches the resource at the URL like {@link #fetch(URL, int)}, using
+	 * connections from the given pool.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param pool      the pool of connections to use
+	 * @return the html or {@code null} if unable to fetch the resource or the
+	 *         resource is not html
 	 *
-	 * @see String#join(CharSequence, CharSequence...)
+	 * @see HttpConnectionPool#get(URL)
+	 * @see HttpsFetcher#getHeaderFields(java.io.InputStream)
 	 *
 	 * @see #isHtml(Map)
 	 * @see #getRedirect(Map)
 	 */
-	public static String fetch(URL url, int redirects) {
-		String html = null;
-		try (Socket socket = HttpsFetcher.openConnection(url);
-				PrintWriter request = new PrintWriter(socket.getOutputStream());
-				InputStreamReader input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
-				BufferedReader response = new BufferedReader(input);) {
-			HttpsFetcher.printGetRequest(request, url);
-			Map<String, List<String>> headers = HttpsFetcher.getHeaderFields(response);
+	public static String fetch(URL url, int redirects, HttpConnectionPool pool) {
+		StringBuilder html = new StringBuilder();
+		return fetch(url, redirects, pool, html) ? joinLines(html.toString()) : null;
+	}
+
+	/**
+	 * Fetches an HTML page like {@link #fetch(URL, int, HttpConnectionPool)}, but
+	 * decodes the body straight into an {@link HtmlScanner} as it arrives instead
+	 * of building the page as a string. Links are made absolute using the url that
+	 * was asked for.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param pool      the pool of connections to use
+	 * @return the links and text of the page, or {@code null} if unable to fetch
+	 *         the resource or the resource is not html
+	 */
+	public static HtmlScanner.Page fetchPage(URL url, int redirects, HttpConnectionPool pool) {
+		return fetchPage(url, redirects, pool, UrlCanonicalizer.DEFAULT);
+	}
+
+	/**
+	 * Fetches an HTML page like {@link #fetchPage(URL, int, HttpConnectionPool)},
+	 * with its links in the form given by the canonicalizer.
+	 *
+	 * @param url           the url to fetch
+	 * @param redirects     the number of times to follow redirects
+	 * @param pool          the pool of connections to use
+	 * @param canonicalizer the canonicalizer of the links
+	 * @return the links and text of the page, or {@code null} if unable to fetch
+	 *         the resource or the resource is not html
+	 */
+	public static HtmlScanner.Page fetchPage(URL url, int redirects, HttpConnectionPool pool,
+			UrlCanonicalizer canonicalizer) {
+		HtmlScanner scanner = new HtmlScanner(url.toString(), canonicalizer);
+		return fetch(url, redirects, pool, scanner) ? scanner.finish() : null;
+	}
+
+	/**
+	 * Fetches the resource at the URL, following redirects, and decodes the body
+	 * into the output if the status code is 200 and the content type is HTML.
+	 * Responses that are not HTML are rejected from their headers, without reading
+	 * the body.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param pool      the pool of connections to use
+	 * @param html      the output for the decoded body
+	 * @return true if an HTML body was fetched, false if unable to fetch the
+	 *         resource or the resource is not html
+	 *
+	 * @see HttpConnectionPool#get(URL)
+	 * @see #isHtml(Map)
+	 * @see #getRedirect(Map)
+	 */
+	private static boolean fetch(URL url, int redirects, HttpConnectionPool pool, Appendable html) {
+		String redirectLocation = null;
+		try (HttpConnectionPool.Connection connection = pool.get(url)) {
+			Map<String, List<String>> headers = connection.getHeaders();
 			int statusCode = getStatusCode(headers);
 			if (statusCode >= 300 && statusCode <= 399) {
-				String redirectLocation = getRedirect(headers);
-				if (redirects > 0 && redirectLocation != null) {
-					return fetch(new URL(redirectLocation), redirects - 1);
-				}
+				redirectLocation = getRedirect(headers);
 			} else if (statusCode == 200 && isHtml(headers)) {
-				List<String> lines = response.lines().toList();
-				html = String.join("\n", lines);
+				decode(connection.getBody(), getCharset(headers), html);
+				return true;
 			}
 		} catch (IOException e) {
-			html = null;
+			return false;
+		}
+
+		if (redirects > 0 && redirectLocation != null) {
+			try {
+				return fetch(new URL(redirectLocation), redirects - 1, pool, html);
+			} catch (MalformedURLException e) {
+				return false;
+			}
 		}
+		return false;
+	}
 
-		return html;
+	/**
+	 * Decodes a body piece by piece into the output, replacing malformed input the
+	 * same way {@link java.io.InputStreamReader} does.
+	 *
+	 * @param body    the body to decode
+	 * @param charset the charset of the body
+	 * @param output  where to write the decoded text
+	 * @throws IOException if unable to read the body
+	 */
+	private static void decode(InputStream body, Charset charset, Appendable output) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		boolean end = false;
+		while (!end) {
+			int read = body.read(bytes.array(), bytes.position(), bytes.remaining());
+			end = read < 0;
+			if (read > 0) {
+				bytes.position(bytes.position() + read);
+			}
+			bytes.flip();
+			while (decoder.decode(bytes, chars, end).isOverflow()) {
+				write(chars, output);
+			}
+			write(chars, output);
+			bytes.compact();
+		}
+		while (decoder.flush(chars).isOverflow()) {
+			write(chars, output);
+		}
+		write(chars, output);
+	}
+
+	/**
+	 * Writes out and empties a buffer of decoded text.
+	 *
+	 * @param chars  the decoded text
+	 * @param output where to write the text
+	 * @throws IOException if unable to write the text
+	 */
+	private static void write(CharBuffer chars, Appendable output) throws IOException {
+		chars.flip();
+		if (chars.hasRemaining()) {
+			output.append(chars, 0, chars.length());
+		}
+		chars.clear();
+	}
+
+	/**
+	 * Splits text into lines the way {@link BufferedReader#lines()} does and joins
+	 * them back together with line feeds.
+	 *
+	 * @param text the text to join
+	 * @return the text with every line ending a line feed and no final line ending
+	 */
+	private static String joinLines(String text) {
+		if (text.indexOf('\r') < 0) {
+			return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+		}
+		StringBuilder joined = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\r') {
+				joined.append('\n');
+				if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+					i++;
+				}
+			} else {
+				joined.append(c);
+			}
+		}
+		if (joined.length() > 0 && joined.charAt(joined.length() - 1) == '\n') {
+			joined.setLength(joined.length() - 1);
+		}
+		return joined.toString();
 	}
 
 	/**
@@ -0,0 +1,983 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+/**
+ * Cleans HTML into plain text in a single pass, giving the same output as the
+ * regular expressions in {@link HtmlCleaner}. The HTML is pushed once through a
+ * chain of small state machines, one for each of the cleaner's passes: comments
+ * (single line, then multiple line), the head, style, script, noscript, iframe,
+ * and svg elements, and finally tags. Each machine follows the matching rules of
+ * the expression it replaces and hands runs of text on to the next one, so no
+ * copy of the page is made between passes, and markup that only turns into a
+ * comment or tag once an earlier pass removed something is still handled the
+ * same way.
+ *
+ * Entities are decoded and unknown entities removed as the text that is left
+ * arrives at the end of the chain, so there is no pass over the text afterwards.
+ *
+ * The cleaner's passes are kept as separate machines rather than folded into
+ * one, because each pass sees the output of the one before it: removing a
+ * comment can join the two halves of a script tag, and removing the head can
+ * join the two halves of a comment or style tag. A single machine would have to
+ * rescan whatever a removal joined, which is exactly what chaining the machines
+ * does, one character at a time.
+ *
+ * {@link #scan(URL, String)} also collects the links of the page during the same
+ * pass, for pages that need both their text and their links. A scanner can also
+ * be created for a page and given the HTML in pieces as it arrives, for example
+ * while it is decoded from a socket, without ever holding the whole page.
+ *
+ * @see HtmlCleaner
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class HtmlScanner implements Appendable {
+	/** Block elements removed along with their content, in order of removal. */
+	private static final String[] BLOCK_ELEMENTS = { "head", "style", "script", "noscript", "iframe", "svg" };
+
+	/** Start of a comment. */
+	private static final String COMMENT = "<!--";
+
+	/** Initalize first stage of the chain */
+	private final Stage first;
+
+	/** Initalize stage collecting the text */
+	private final Sink sink;
+
+	/** Initalize links found so far */
+	private final ArrayList<String> links;
+
+	/**
+	 * Constructor for a scanner that cleans a page given in pieces and finds its
+	 * links, like {@link #scan(URL, String)}.
+	 *
+	 * @param base the URL of the page, used to make links absolute
+	 */
+	public HtmlScanner(URL base) {
+		this(base.toString(), UrlCanonicalizer.DEFAULT);
+	}
+
+	/**
+	 * Constructor for a scanner that cleans a page given in pieces and finds its
+	 * links in the form given by the canonicalizer.
+	 *
+	 * @param base          the URL of the page, used to make links absolute
+	 * @param canonicalizer the canonicalizer of the links
+	 */
+	public HtmlScanner(String base, UrlCanonicalizer canonicalizer) {
+		this.sink = new Sink(4096, true);
+		this.links = new ArrayList<>();
+		this.first = blockStages(new LinkStage(base, canonicalizer, links, new TagStage(sink)));
+	}
+
+	/**
+	 * Scans the next piece of the page.
+	 *
+	 * @param html  the piece of the page
+	 * @param start the first index to scan
+	 * @param end   the index to stop at
+	 * @return this scanner
+	 */
+	@Override
+	public HtmlScanner append(CharSequence html, int start, int end) {
+		first.write(html == null ? "null" : html, start, end);
+		return this;
+	}
+
+	/**
+	 * Scans the next piece of the page.
+	 *
+	 * @param html the piece of the page
+	 * @return this scanner
+	 */
+	@Override
+	public HtmlScanner append(CharSequence html) {
+		CharSequence text = html == null ? "null" : html;
+		return append(text, 0, text.length());
+	}
+
+	/**
+	 * Scans the next character of the page.
+	 *
+	 * @param c the character
+	 * @return this scanner
+	 */
+	@Override
+	public HtmlScanner append(char c) {
+		return append(String.valueOf(c), 0, 1);
+	}
+
+	/**
+	 * Ends the page. The scanner can not be used afterwards.
+	 *
+	 * @return the links and text of the page
+	 */
+	public Page finish() {
+		first.end();
+		return new Page(links, sink.text.toString());
+	}
+
+	/**
+	 * Removes comments and the head, style, script, noscript, iframe, and svg
+	 * elements from the provided html.
+	 *
+	 * @param html the HTML to strip comments and block elements from
+	 * @return text clean of any comments and certain HTML block elements
+	 *
+	 * @see HtmlCleaner#stripBlockElements(String)
+	 */
+	public static String stripBlockElements(String html) {
+		Sink sink = new Sink(html.length(), false);
+		scan(html, blockStages(sink));
+		return sink.text.toString();
+	}
+
+	/**
+	 * Removes all HTML tags and certain block elements from the provided text, and
+	 * converts or removes HTML entities.
+	 *
+	 * @param html the HTML to strip tags and elements from
+	 * @return text clean of any HTML tags and certain block elements
+	 *
+	 * @see HtmlCleaner#stripHtml(String)
+	 */
+	public static String stripHtml(String html) {
+		Sink sink = new Sink(html.length() / 2, true);
+		scan(html, blockStages(new TagStage(sink)));
+		return sink.text.toString();
+	}
+
+	/**
+	 * Cleans a page into plain text and finds its links in a single scan. The
+	 * links are the ones
+	 * {@link LinkFinder#findLinks(String, CharSequence, UrlCanonicalizer, java.util.Collection)}
+	 * finds in {@link #stripBlockElements(String)} with the default
+	 * canonicalizer, and the text is the same as {@link #stripHtml(String)}.
+	 *
+	 * @param base the URL of the page, used to make links absolute
+	 * @param html the HTML of the page
+	 * @return the links and text of the page
+	 */
+	public static Page scan(URL base, String html) {
+		return new HtmlScanner(base).append(html, 0, html.length()).finish();
+	}
+
+	/**
+	 * The links and plain text of a page.
+	 */
+	public static class Page {
+		/** Initalize links, in the order they were found */
+		private final List<String> links;
+
+		/** Initalize plain text */
+		private final String text;
+
+		/**
+		 * @param links the links of the page
+		 * @param text  the plain text of the page
+		 */
+		private Page(List<String> links, String text) {
+			this.links = Collections.unmodifiableList(links);
+			this.text = text;
+		}
+
+		/**
+		 * @return the valid HTTP(S) links of the page, absolute and canonical, in
+		 *         the order they were found
+		 */
+		public List<String> getLinks() {
+			return links;
+		}
+
+		/**
+		 * @return the plain text of the page
+		 */
+		public String getText() {
+			return text;
+		}
+	}
+
+	/**
+	 * Pushes the html through a chain of stages.
+	 *
+	 * @param html  the html to scan
+	 * @param first the first stage of the chain
+	 */
+	private static void scan(String html, Stage first) {
+		first.write(html, 0, html.length());
+		first.end();
+	}
+
+	/**
+	 * Builds the stages that remove comments and block elements.
+	 *
+	 * @param next the stage that receives the remaining text
+	 * @return the first stage
+	 */
+	private static Stage blockStages(Stage next) {
+		Stage stage = next;
+		for (int i = BLOCK_ELEMENTS.length - 1; i >= 0; i--) {
+			stage = new ElementStage(BLOCK_ELEMENTS[i], stage);
+		}
+		return new CommentStage(false, new CommentStage(true, stage));
+	}
+
+	/**
+	 * Undoes the placeholder {@link HtmlCleaner#stripTags(String)} uses to protect
+	 * {@code <=}, which also turns the placeholder itself into {@code <=} when it
+	 * appears in the page, then converts HTML 4 entities to their Unicode
+	 * characters.
+	 *
+	 * @param text   the text to convert
+	 * @param end    the index to stop converting at
+	 * @param output where to write the converted text
+	 *
+	 * @see HtmlCleaner#stripEntities(String)
+	 */
+	private static void unescape(StringBuilder text, int end, StringBuilder output) {
+		CharSequence input = text;
+		if (indexOf(text, '\uE000', 0, end) >= 0) {
+			input = text.substring(0, end).replace("\uE000\uE001", "<=");
+			end = input.length();
+		}
+		int i = 0;
+		int amp = indexOf(input, '&', 0, end);
+		if (amp < 0) {
+			output.append(input, 0, end);
+			return;
+		}
+		StringWriter writer = new StringWriter(end);
+		CharSequence window = input.subSequence(0, end);
+		try {
+			while (amp >= 0) {
+				writer.append(window, i, amp);
+				int consumed = StringEscapeUtils.UNESCAPE_HTML4.translate(window, amp, writer);
+				if (consumed == 0) {
+					writer.append('&');
+					i = amp + 1;
+				} else {
+					i = amp;
+					for (int count = 0; count < consumed; count++) {
+						i += Character.charCount(Character.codePointAt(window, i));
+					}
+				}
+				amp = indexOf(window, '&', i, end);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		writer.append(window, i, end);
+		output.append(writer.getBuffer());
+	}
+
+	/**
+	 * Removes every match of {@code &(?!gt;|lt;)[a-zA-Z0-9#]+;}.
+	 *
+	 * @param text   the decoded text
+	 * @param end    the index to stop removing at
+	 * @param output where to write the text without unknown entities
+	 */
+	private static void removeUnknownEntities(CharSequence text, int end, StringBuilder output) {
+		int i = 0;
+		int amp = indexOf(text, '&', 0, end);
+		while (amp >= 0) {
+			output.append(text, i, amp);
+			int stop = amp + 1;
+			if (!startsWith(text, stop, end, "gt;") && !startsWith(text, stop, end, "lt;")) {
+				while (stop < end && isEntityChar(text.charAt(stop))) {
+					stop++;
+				}
+			}
+			if (stop > amp + 1 && stop < end && text.charAt(stop) == ';') {
+				i = stop + 1;
+			} else {
+				output.append('&');
+				i = amp + 1;
+			}
+			amp = indexOf(text, '&', i, end);
+		}
+		output.append(text, i, end);
+	}
+
+	/**
+	 * Finds where the possible entity at the end of the text starts. Whether an
+	 * entity is decoded or removed only depends on the letters, digits, and
+	 * {@code #} after its {@code &} and the character after them, so only a
+	 * {@code &} followed by nothing else up to the end is undecided.
+	 *
+	 * @param text the text
+	 * @return the index of the undecided {@code &}, or the length of the text
+	 */
+	private static int undecided(CharSequence text) {
+		int length = text.length();
+		for (int i = length - 1; i >= 0; i--) {
+			char c = text.charAt(i);
+			if (c == '&') {
+				return i;
+			}
+			if (!isEntityChar(c)) {
+				break;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @param c the character to check
+	 * @return true if the character may appear in the name of an entity
+	 */
+	private static boolean isEntityChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '#';
+	}
+
+	/**
+	 * @param text   the text to check
+	 * @param index  where to start looking
+	 * @param end    the index to stop looking at
+	 * @param prefix the expected characters
+	 * @return true if the text has the prefix at the index
+	 */
+	private static boolean startsWith(CharSequence text, int index, int end, String prefix) {
+		if (index + prefix.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (text.charAt(index + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a character within part of a sequence.
+	 *
+	 * @param text  the text to search
+	 * @param c     the character to find
+	 * @param start the first index to search
+	 * @param end   the index to stop searching at
+	 * @return the index of the character, or -1 if not found
+	 */
+	private static int indexOf(CharSequence text, char c, int start, int end) {
+		if (text instanceof String) {
+			int index = ((String) text).indexOf(c, start);
+			return index < end ? index : -1;
+		}
+		if (text instanceof CharBuffer && ((CharBuffer) text).hasArray()) {
+			CharBuffer buffer = (CharBuffer) text;
+			char[] array = buffer.array();
+			int offset = buffer.arrayOffset() + buffer.position();
+			for (int i = start; i < end; i++) {
+				if (array[offset + i] == c) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether a character after an element name continues the name, which is how
+	 * {@code \b} in {@link java.util.regex.Pattern} decides there is no boundary
+	 * right after a letter.
+	 *
+	 * @param codePoint the code point after the name
+	 * @return true if there is no word boundary before the code point
+	 */
+	private static boolean isWord(int codePoint) {
+		return codePoint == '_' || Character.isLetterOrDigit(codePoint)
+				|| Character.getType(codePoint) == Character.NON_SPACING_MARK;
+	}
+
+	/**
+	 * Whether two characters are equal ignoring ASCII case, the way
+	 * {@link java.util.regex.Pattern#CASE_INSENSITIVE} compares them.
+	 *
+	 * @param c    the character of the text
+	 * @param name the lower case character of the element name
+	 * @return true if the characters match
+	 */
+	private static boolean matches(char c, char name) {
+		return c == name || (c >= 'A' && c <= 'Z' && c + ('a' - 'A') == name);
+	}
+
+	/**
+	 * One pass of the cleaner. Text is written in runs and whatever the pass keeps
+	 * is written on to the next stage. A stage only holds on to text it has not
+	 * decided about yet, such as a comment that has not been closed.
+	 */
+	private abstract static class Stage {
+		/** Initalize the stage receiving the kept text */
+		protected final Stage next;
+
+		/**
+		 * @param next the stage receiving the kept text, or null
+		 */
+		protected Stage(Stage next) {
+			this.next = next;
+		}
+
+		/**
+		 * Scans part of the text.
+		 *
+		 * @param text  the text
+		 * @param start the first index to scan
+		 * @param end   the index to stop at
+		 */
+		protected abstract void write(CharSequence text, int start, int end);
+
+		/**
+		 * Passes on any text still held at the end of the input.
+		 */
+		protected abstract void end();
+
+		/**
+		 * Writes part of the text to the next stage, if not empty.
+		 *
+		 * @param text  the text
+		 * @param start the first index to write
+		 * @param end   the index to stop at
+		 */
+		protected void forward(CharSequence text, int start, int end) {
+			if (start < end) {
+				next.write(text, start, end);
+			}
+		}
+	}
+
+	/**
+	 * Collects the text that made it through every stage, decoding entities as it
+	 * arrives if asked to. Only a possible entity or placeholder at the end of the
+	 * text so far is held back until the text after it arrives.
+	 */
+	private static class Sink extends Stage {
+		/** Initalize collected text */
+		private final StringBuilder text;
+
+		/** Initalize whether to decode entities */
+		private final boolean decode;
+
+		/** Initalize text held back before it is unescaped */
+		private final StringBuilder raw;
+
+		/** Initalize unescaped text held back before unknown entities are removed */
+		private final StringBuilder unescaped;
+
+		/**
+		 * @param capacity the initial capacity
+		 * @param decode   whether to decode entities
+		 */
+		private Sink(int capacity, boolean decode) {
+			super(null);
+			this.text = new StringBuilder(capacity);
+			this.decode = decode;
+			this.raw = new StringBuilder();
+			this.unescaped = new StringBuilder();
+		}
+
+		@Override
+		protected void write(CharSequence text, int start, int end) {
+			if (!decode || (raw.isEmpty() && unescaped.isEmpty() && indexOf(text, '&', start, end) < 0
+					&& indexOf(text, '\uE000', start, end) < 0)) {
+				this.text.append(text, start, end);
+				return;
+			}
+			raw.append(text, start, end);
+			int last = raw.length() - 1;
+			// a placeholder may be completed by the next character
+			int hold = raw.charAt(last) == '\uE000' ? last : undecided(raw);
+			if (hold > 0) {
+				unescape(raw, hold, unescaped);
+				raw.delete(0, hold);
+				hold = undecided(unescaped);
+				removeUnknownEntities(unescaped, hold, this.text);
+				unescaped.delete(0, hold);
+			}
+		}
+
+		@Override
+		protected void end() {
+			if (decode) {
+				unescape(raw, raw.length(), unescaped);
+				raw.setLength(0);
+				removeUnknownEntities(unescaped, unescaped.length(), text);
+				unescaped.setLength(0);
+			}
+		}
+	}
+
+	/**
+	 * Removes comments, like {@code <!--(.*?)-->} or, across lines,
+	 * {@code (?s)<!--.*?-->}.
+	 */
+	private static class CommentStage extends Stage {
+		/** Initalize whether comments may span lines */
+		private final boolean dotAll;
+
+		/** Initalize the text of the possible comment */
+		private final StringBuilder pending;
+
+		/** Initalize number of characters of the comment start seen */
+		private int matched;
+
+		/**
+		 * @param dotAll whether comments may span lines
+		 * @param next   the stage receiving the kept text
+		 */
+		private CommentStage(boolean dotAll, Stage next) {
+			super(next);
+			this.dotAll = dotAll;
+			this.pending = new StringBuilder();
+			this.matched = 0;
+		}
+
+		@Override
+		protected void write(CharSequence text, int start, int end) {
+			int i = start;
+			while (i < end) {
+				if (matched == 0) {
+					int open = indexOf(text, '<', i, end);
+					if (open < 0) {
+						forward(text, i, end);
+						return;
+					}
+					forward(text, i, open);
+					pending.append('<');
+					matched = 1;
+					i = open + 1;
+				} else if (matched < COMMENT.length()) {
+					char c = text.charAt(i);
+					if (c == COMMENT.charAt(matched)) {
+						pending.append(c);
+						matched++;
+						i++;
+					} else {
+						flush();
+					}
+				} else {
+					int close = indexOf(text, '>', i, end);
+					int stop = close < 0 ? end : close;
+					if (!dotAll) {
+						int line = lineTerminator(text, i, stop);
+						if (line >= 0) {
+							// no comment can start before the line break and end after it
+							pending.append(text, i, line + 1);
+							i = line + 1;
+							flush();
+							continue;
+						}
+					}
+					pending.append(text, i, stop);
+					i = stop;
+					if (close >= 0) {
+						i++;
+						int length = pending.length();
+						if (length >= COMMENT.length() + 2 && pending.charAt(length - 1) == '-'
+								&& pending.charAt(length - 2) == '-') {
+							pending.setLength(0);
+							matched = 0;
+						} else {
+							pending.append('>');
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		protected void end() {
+			// an unclosed comment means every later comment start is unclosed too
+			flush();
+			next.end();
+		}
+
+		/**
+		 * Gives up on the possible comment and passes its text on.
+		 */
+		private void flush() {
+			forward(pending, 0, pending.length());
+			pending.setLength(0);
+			matched = 0;
+		}
+
+		/**
+		 * @param text  the text to search
+		 * @param start the first index to search
+		 * @param end   the index to stop at
+		 * @return the index of the first character {@code .} does not match, or -1
+		 */
+		private static int lineTerminator(CharSequence text, int start, int end) {
+			for (int i = start; i < end; i++) {
+				char c = text.charAt(i);
+				if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Removes an element and its content, like
+	 * {@code (?i)<name\b[^>]*>(?>[^<]*(?:(?!</?name\b[^>]*>)<[^<]*)*)(</name\b[^>]*>)?}.
+	 * The content ends at the closing tag, at a nested opening tag (which then
+	 * starts the next match), or at the end of the text.
+	 */
+	private static class ElementStage extends Stage {
+		/** Outside of the element. */
+		private static final int OUTSIDE = 0;
+		/** Reading the name of a possible opening tag. */
+		private static final int OPEN_NAME = 1;
+		/** Read a high surrogate right after the name of a possible opening tag. */
+		private static final int OPEN_SURROGATE = 2;
+		/** Reading the rest of an opening tag. */
+		private static final int OPEN_REST = 3;
+		/** Inside the element. */
+		private static final int INSIDE = 4;
+		/** Read a {@code <} inside the element. */
+		private static final int INNER_START = 5;
+		/** Reading the name of a possible tag inside the element. */
+		private static final int INNER_NAME = 6;
+		/** Read a high surrogate right after the name of a tag inside the element. */
+		private static final int INNER_SURROGATE = 7;
+		/** Reading the rest of a tag inside the element. */
+		private static final int INNER_REST = 8;
+
+		/** Initalize lower case element name */
+		private final String name;
+
+		/** Initalize the text of the possible opening tag */
+		private final StringBuilder pending;
+
+		/** Initalize scanner state */
+		private int state;
+
+		/** Initalize number of characters of the name seen */
+		private int matched;
+
+		/** Initalize whether the tag inside the element is a closing tag */
+		private boolean closing;
+
+		/** Initalize high surrogate read after the name of a tag inside the element */
+		private char high;
+
+		/**
+		 * @param name the lower case element name
+		 * @param next the stage receiving the kept text
+		 */
+		private ElementStage(String name, Stage next) {
+			super(next);
+			this.name = name;
+			this.pending = new StringBuilder();
+			this.state = OUTSIDE;
+		}
+
+		@Override
+		protected void write(CharSequence text, int start, int end) {
+			int i = start;
+			while (i < end) {
+				switch (state) {
+					case OUTSIDE -> {
+						int open = indexOf(text, '<', i, end);
+						if (open < 0) {
+							forward(text, i, end);
+							return;
+						}
+						forward(text, i, open);
+						pending.append('<');
+						matched = 0;
+						state = OPEN_NAME;
+						i = open + 1;
+					}
+					case OPEN_NAME -> {
+						char c = text.charAt(i);
+						if (matched < name.length()) {
+							if (matches(c, name.charAt(matched))) {
+								pending.append(c);
+								matched++;
+								i++;
+							} else {
+								flush();
+							}
+						} else if (Character.isHighSurrogate(c)) {
+							pending.append(c);
+							state = OPEN_SURROGATE;
+							i++;
+						} else {
+							state = isWord(c) ? flush() : OPEN_REST;
+						}
+					}
+					case OPEN_SURROGATE -> {
+						state = isWord(codePoint(pending.charAt(pending.length() - 1), text.charAt(i))) ? flush()
+								: OPEN_REST;
+					}
+					case OPEN_REST -> {
+						int close = indexOf(text, '>', i, end);
+						if (close < 0) {
+							pending.append(text, i, end);
+							return;
+						}
+						pending.setLength(0);
+						state = INSIDE;
+						i = close + 1;
+					}
+					case INSIDE -> {
+						int open = indexOf(text, '<', i, end);
+						if (open < 0) {
+							return;
+						}
+						state = INNER_START;
+						i = open + 1;
+					}
+					case INNER_START -> {
+						closing = text.charAt(i) == '/';
+						if (closing) {
+							i++;
+						}
+						matched = 0;
+						state = INNER_NAME;
+					}
+					case INNER_NAME -> {
+						char c = text.charAt(i);
+						if (matched < name.length()) {
+							if (matches(c, name.charAt(matched))) {
+								matched++;
+								i++;
+							} else {
+								state = INSIDE;
+							}
+						} else if (Character.isHighSurrogate(c)) {
+							high = c;
+							state = INNER_SURROGATE;
+							i++;
+						} else {
+							state = isWord(c) ? INSIDE : INNER_REST;
+						}
+					}
+					case INNER_SURROGATE -> {
+						state = isWord(codePoint(high, text.charAt(i))) ? INSIDE : INNER_REST;
+					}
+					case INNER_REST -> {
+						int close = indexOf(text, '>', i, end);
+						if (close < 0) {
+							return;
+						}
+						// a closing tag ends the element, an opening tag starts it again
+						state = closing ? OUTSIDE : INSIDE;
+						i = close + 1;
+					}
+					default -> throw new IllegalStateException("Unknown state: " + state);
+				}
+			}
+		}
+
+		@Override
+		protected void end() {
+			if (state == OPEN_NAME || state == OPEN_SURROGATE || state == OPEN_REST) {
+				// a tag without a closing bracket means every later tag is unclosed too
+				flush();
+			}
+			state = OUTSIDE;
+			next.end();
+		}
+
+		/**
+		 * Gives up on the possible opening tag and passes its text on.
+		 *
+		 * @return the new state
+		 */
+		private int flush() {
+			forward(pending, 0, pending.length());
+			pending.setLength(0);
+			state = OUTSIDE;
+			return state;
+		}
+
+		/**
+		 * @param high the high surrogate
+		 * @param next the following character
+		 * @return the code point at the high surrogate
+		 */
+		private static int codePoint(char high, char next) {
+			return Character.isLowSurrogate(next) ? Character.toCodePoint(high, next) : high;
+		}
+	}
+
+	/**
+	 * Passes all text on unchanged while finding links in it. An anchor can not
+	 * contain a {@code >}, so every stretch from a {@code <} to the next {@code >}
+	 * is searched on its own.
+	 */
+	private static class LinkStage extends Stage {
+		/** Initalize base URL */
+		private final String base;
+
+		/** Initalize canonicalizer of the links */
+		private final UrlCanonicalizer canonicalizer;
+
+		/** Initalize found links */
+		private final List<String> links;
+
+		/** Initalize the text since the last {@code <} */
+		private final StringBuilder tag;
+
+		/** Initalize whether a {@code <} was read since the last {@code >} */
+		private boolean inside;
+
+		/**
+		 * @param base          the base URL used to make links absolute
+		 * @param canonicalizer the canonicalizer of the links
+		 * @param links         where to add the links
+		 * @param next          the stage receiving the text
+		 */
+		private LinkStage(String base, UrlCanonicalizer canonicalizer, List<String> links, Stage next) {
+			super(next);
+			this.base = base;
+			this.canonicalizer = canonicalizer;
+			this.links = links;
+			this.tag = new StringBuilder();
+			this.inside = false;
+		}
+
+		@Override
+		protected void write(CharSequence text, int start, int end) {
+			forward(text, start, end);
+			int i = start;
+			while (i < end) {
+				if (!inside) {
+					int open = indexOf(text, '<', i, end);
+					if (open < 0) {
+						return;
+					}
+					inside = true;
+					i = open;
+				}
+				int close = indexOf(text, '>', i, end);
+				if (close < 0) {
+					tag.append(text, i, end);
+					return;
+				}
+				tag.append(text, i, close);
+				findLinks();
+				i = close + 1;
+			}
+		}
+
+		@Override
+		protected void end() {
+			if (inside) {
+				findLinks();
+			}
+			next.end();
+		}
+
+		/**
+		 * Finds the links in the text since the last {@code <}, if it could hold an
+		 * anchor.
+		 */
+		private void findLinks() {
+			for (int i = tag.indexOf("<"); i >= 0 && i + 1 < tag.length(); i = tag.indexOf("<", i + 1)) {
+				char c = tag.charAt(i + 1);
+				if (c == 'a' || c == 'A') {
+					LinkFinder.findLinks(base, tag, canonicalizer, links);
+					break;
+				}
+			}
+			tag.setLength(0);
+			inside = false;
+		}
+	}
+
+	/**
+	 * Removes tags, like {@code <(?!=)[^>]+>}.
+	 */
+	private static class TagStage extends Stage {
+		/** Outside of a tag. */
+		private static final int OUTSIDE = 0;
+		/** Read a {@code <}. */
+		private static final int START = 1;
+		/** Inside a tag. */
+		private static final int INSIDE = 2;
+
+		/** Initalize the text of the possible tag */
+		private final StringBuilder pending;
+
+		/** Initalize scanner state */
+		private int state;
+
+		/**
+		 * @param next the stage receiving the kept text
+		 */
+		private TagStage(Stage next) {
+			super(next);
+			this.pending = new StringBuilder();
+			this.state = OUTSIDE;
+		}
+
+		@Override
+		protected void write(CharSequence text, int start, int end) {
+			int i = start;
+			while (i < end) {
+				if (state == OUTSIDE) {
+					int open = indexOf(text, '<', i, end);
+					if (open < 0) {
+						forward(text, i, end);
+						return;
+					}
+					forward(text, i, open);
+					state = START;
+					i = open + 1;
+				} else if (state == START) {
+					char c = text.charAt(i);
+					if (c == '=' || c == '>') {
+						next.write("<", 0, 1);
+						state = OUTSIDE;
+					} else {
+						pending.append('<');
+						state = INSIDE;
+					}
+				} else {
+					int close = indexOf(text, '>', i, end);
+					if (close < 0) {
+						pending.append(text, i, end);
+						return;
+					}
+					pending.setLength(0);
+					state = OUTSIDE;
+					i = close + 1;
+				}
+			}
+		}
+
+		@Override
+		protected void end() {
+			if (state == START) {
+				next.write("<", 0, 1);
+			} else if (state == INSIDE) {
+				// a tag without a closing bracket means every later tag is unclosed too
+				forward(pending, 0, pending.length());
+			}
+			pending.setLength(0);
+			state = OUTSIDE;
+			next.end();
+		}
+	}
+}
@@ -0,0 +1,1148 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.PushbackInputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Pool of persistent HTTP/1.1 connections, kept per host (protocol, host, and
+ * port) so that fetching many pages from one site reuses a few sockets instead
+ * of opening a new, often TLS, connection for every page and redirect.
+ *
+ * At most a fixed number of connections per host are in use at once; further
+ * requests to that host wait for one to be returned. Returned connections are
+ * only kept if the server agreed to keep them open and the whole response body
+ * was read, which relies on the Content-Length or chunked framing of the body.
+ * Connections left idle for too long are closed, and a host is forgotten once
+ * it has no connections, idle or in use, and no request waiting for one.
+ *
+ * Every request made through the pool is limited by a connect timeout, a read
+ * timeout for each wait on the socket, a deadline for the whole request, and a
+ * maximum body size, so one slow or enormous response cannot hold up a crawl.
+ * Requests that time out or are aborted for their size are counted.
+ *
+ * @see HttpsFetcher
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class HttpConnectionPool implements Closeable {
+	/** Default number of connections per host. */
+	public static final int DEFAULT_MAX_PER_HOST = 6;
+
+	/** Default time in milliseconds a connection may stay idle. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30_000;
+
+	/** Default connect timeout in milliseconds. */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+
+	/** Default read timeout in milliseconds. */
+	public static final int DEFAULT_READ_TIMEOUT = 10_000;
+
+	/** Default time in milliseconds a whole request may take. */
+	public static final long DEFAULT_REQUEST_TIMEOUT = 30_000;
+
+	/** Default maximum body size in bytes. */
+	public static final long DEFAULT_MAX_BODY_SIZE = 10L * 1024 * 1024;
+
+	/** Most bytes read from an unread body to make its connection reusable. */
+	private static final int DRAIN_LIMIT = 8192;
+
+	/**
+	 * Initalize maximum connections per host
+	 */
+	private final int maxPerHost;
+
+	/**
+	 * Initalize idle timeout in milliseconds
+	 */
+	private final long idleTimeout;
+
+	/**
+	 * Initalize connect timeout in milliseconds, or 0 for none
+	 */
+	private final int connectTimeout;
+
+	/**
+	 * Initalize read timeout in milliseconds, or 0 for none
+	 */
+	private final int readTimeout;
+
+	/**
+	 * Initalize time in milliseconds a whole request may take, or 0 for no limit
+	 */
+	private final long requestTimeout;
+
+	/**
+	 * Initalize maximum body size in bytes, or 0 for no limit
+	 */
+	private final long maxBodySize;
+
+	/**
+	 * Initalize hosts, guarded by the pool
+	 */
+	private final HashMap<String, Host> hosts;
+
+	/**
+	 * Initalize time of the last sweep for idle connections
+	 */
+	private final AtomicLong lastSweep;
+
+	/**
+	 * Initalize counter of opened connections
+	 */
+	private final LongAdder opened;
+
+	/**
+	 * Initalize counter of requests sent on a reused connection
+	 */
+	private final LongAdder reused;
+
+	/**
+	 * Initalize counter of requests that timed out
+	 */
+	private final LongAdder timedOut;
+
+	/**
+	 * Initalize counter of requests aborted for the size of their body
+	 */
+	private final LongAdder truncated;
+
+	/**
+	 * Initalize counter of responses sent with a gzip or deflate content encoding
+	 */
+	private final LongAdder compressed;
+
+	/**
+	 * Initalize counter of body bytes read from the socket
+	 */
+	private final LongAdder wireBytes;
+
+	/**
+	 * Initalize counter of body bytes after decompression
+	 */
+	private final LongAdder contentBytes;
+
+	/**
+	 * Initalize whether the pool was closed
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor with the default limits
+	 */
+	public HttpConnectionPool() {
+		this(DEFAULT_MAX_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Constructor with the default timeouts and body size
+	 *
+	 * @param maxPerHost  the most connections in use per host at once
+	 * @param idleTimeout the time in milliseconds a connection may stay idle
+	 */
+	public HttpConnectionPool(int maxPerHost, long idleTimeout) {
+		this(maxPerHost, idleTimeout, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_REQUEST_TIMEOUT,
+				DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * Constructor. A timeout or size of 0 means no limit.
+	 *
+	 * @param maxPerHost     the most connections in use per host at once
+	 * @param idleTimeout    the time in milliseconds a connection may stay idle
+	 * @param connectTimeout the time in milliseconds to wait for a connection
+	 * @param readTimeout    the time in milliseconds to wait for each read
+	 * @param requestTimeout the time in milliseconds a whole request may take,
+	 *                       from sending it to reading the last byte of the body
+	 * @param maxBodySize    the most bytes of body to read before giving up
+	 */
+	public HttpConnectionPool(int maxPerHost, long idleTimeout, int connectTimeout, int readTimeout,
+			long requestTimeout, long maxBodySize) {
+		if (maxPerHost <= 0) {
+			throw new IllegalArgumentException("Connections per host must be positive: " + maxPerHost);
+		}
+		this.maxPerHost = maxPerHost;
+		this.idleTimeout = idleTimeout;
+		this.connectTimeout = Math.max(0, connectTimeout);
+		this.readTimeout = Math.max(0, readTimeout);
+		this.requestTimeout = Math.max(0, requestTimeout);
+		this.maxBodySize = Math.max(0, maxBodySize);
+		this.hosts = new HashMap<>();
+		this.lastSweep = new AtomicLong(System.currentTimeMillis());
+		this.opened = new LongAdder();
+		this.reused = new LongAdder();
+		this.timedOut = new LongAdder();
+		this.truncated = new LongAdder();
+		this.compressed = new LongAdder();
+		this.wireBytes = new LongAdder();
+		this.contentBytes = new LongAdder();
+		this.closed = false;
+	}
+
+	/**
+	 * Sends a GET request for the URL on a pooled connection and reads the
+	 * response headers. If a reused connection turns out to have been closed by
+	 * the server, the request is sent again on another one. The returned
+	 * connection must be closed to give it back to the pool.
+	 *
+	 * @param url the url to fetch
+	 * @return the connection, positioned at the start of the response body
+	 * @throws IOException if unable to connect or read the response headers
+	 */
+	public Connection get(URL url) throws IOException {
+		while (true) {
+			Connection connection = acquire(url);
+			try {
+				connection.send(url);
+				return connection;
+			} catch (IOException | RuntimeException e) {
+				connection.discard();
+				if (!connection.reused || e instanceof InterruptedIOException) {
+					// only a reused connection may have been closed while idle, and a slow
+					// server is no reason to try again
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes an idle connection to the host of the URL, or opens a new one, waiting
+	 * while the host already has the most connections in use.
+	 *
+	 * @param url the url to connect to
+	 * @return the connection
+	 * @throws IOException if unable to connect, or interrupted while waiting
+	 */
+	private Connection acquire(URL url) throws IOException {
+		if (closed) {
+			throw new IOException("Connection pool is closed");
+		}
+		sweep();
+		Host host;
+		synchronized (this) {
+			host = hosts.computeIfAbsent(key(url), Host::new);
+			host.users++;
+		}
+		try {
+			host.permits.acquire();
+		} catch (InterruptedException e) {
+			leave(host);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a connection to " + url.getHost());
+		}
+
+		Connection connection = host.poll();
+		if (connection != null) {
+			connection.reused = true;
+			reused.increment();
+			return connection;
+		}
+		try {
+			connection = new Connection(host, HttpsFetcher.openConnection(url, connectTimeout));
+		} catch (IOException | RuntimeException e) {
+			host.permits.release();
+			leave(host);
+			if (e instanceof SocketTimeoutException) {
+				timedOut.increment();
+			}
+			throw e;
+		}
+		opened.increment();
+		return connection;
+	}
+
+	/**
+	 * Marks a request for a connection to a host as over, and forgets the host if
+	 * it has nothing left.
+	 *
+	 * @param host the host
+	 */
+	private synchronized void leave(Host host) {
+		host.users--;
+		forget(host);
+	}
+
+	/**
+	 * Forgets a host with no connections and no requests for one. The caller must
+	 * hold the lock of the pool.
+	 *
+	 * @param host the host
+	 */
+	private void forget(Host host) {
+		if (host.users == 0) {
+			synchronized (host.idle) {
+				if (host.idle.isEmpty()) {
+					hosts.remove(host.key, host);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of hosts with connections or requests for one
+	 */
+	public synchronized int hosts() {
+		return hosts.size();
+	}
+
+	/**
+	 * Closes idle connections that timed out, at most every half timeout.
+	 */
+	private void sweep() {
+		long now = System.currentTimeMillis();
+		long last = lastSweep.get();
+		if (now - last >= idleTimeout / 2 && lastSweep.compareAndSet(last, now)) {
+			evictIdle();
+		}
+	}
+
+	/**
+	 * Closes every idle connection that has timed out.
+	 */
+	public void evictIdle() {
+		Host[] snapshot;
+		synchronized (this) {
+			snapshot = hosts.values().toArray(Host[]::new);
+		}
+		for (Host host : snapshot) {
+			host.evict(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Closes every idle connection. Connections in use are closed once they are
+	 * given back.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Host[] snapshot;
+		synchronized (this) {
+			snapshot = hosts.values().toArray(Host[]::new);
+		}
+		for (Host host : snapshot) {
+			host.evict(Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * @return the number of connections opened
+	 */
+	public long opened() {
+		return opened.sum();
+	}
+
+	/**
+	 * @return the number of requests sent on a reused connection
+	 */
+	public long reused() {
+		return reused.sum();
+	}
+
+	/**
+	 * @return the number of requests that timed out connecting, reading, or in
+	 *         total
+	 */
+	public long timedOut() {
+		return timedOut.sum();
+	}
+
+	/**
+	 * @return the number of requests aborted because their body was too large
+	 */
+	public long truncated() {
+		return truncated.sum();
+	}
+
+	/**
+	 * @return the number of responses sent with a gzip or deflate content encoding
+	 */
+	public long compressed() {
+		return compressed.sum();
+	}
+
+	/**
+	 * @return the number of body bytes read from the socket, before decompression
+	 */
+	public long wireBytes() {
+		return wireBytes.sum();
+	}
+
+	/**
+	 * @return the number of body bytes read after decompression
+	 */
+	public long contentBytes() {
+		return contentBytes.sum();
+	}
+
+	@Override
+	public String toString() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("maxPerHost", maxPerHost);
+		stats.put("hosts", hosts());
+		stats.put("opened", opened());
+		stats.put("reused", reused());
+		stats.put("timedOut", timedOut());
+		stats.put("truncated", truncated());
+		stats.put("compressed", compressed());
+		stats.put("wireBytes", wireBytes());
+		stats.put("contentBytes", contentBytes());
+		return stats.toString();
+	}
+
+	/**
+	 * @param url the url
+	 * @return the key of the host of the url
+	 */
+	private static String key(URL url) {
+		String protocol = url.getProtocol().toLowerCase(Locale.ROOT);
+		int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+		return protocol + "://" + url.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+	}
+
+	/**
+	 * Connections and the connection limit of one host.
+	 */
+	private class Host {
+		/** Initalize key of the host */
+		private final String key;
+
+		/**
+		 * Initalize number of requests holding or waiting for a connection, guarded
+		 * by the pool
+		 */
+		private int users;
+
+		/** Initalize permits for connections in use */
+		private final Semaphore permits;
+
+		/** Initalize idle connections, most recently used first */
+		private final ArrayDeque<Connection> idle;
+
+		/**
+		 * Constructor
+		 *
+		 * @param key the key of the host
+		 */
+		private Host(String key) {
+			this.key = key;
+			this.users = 0;
+			this.permits = new Semaphore(maxPerHost);
+			this.idle = new ArrayDeque<>();
+		}
+
+		/**
+		 * @return the most recently used idle connection that has not timed out, or
+		 *         null if there is none
+		 */
+		private Connection poll() {
+			evict(System.currentTimeMillis());
+			synchronized (idle) {
+				return idle.pollFirst();
+			}
+		}
+
+		/**
+		 * Closes idle connections that were last used before the timeout.
+		 *
+		 * @param now the current time in milliseconds
+		 */
+		private void evict(long now) {
+			ArrayDeque<Connection> expired = new ArrayDeque<>();
+			synchronized (idle) {
+				Iterator<Connection> iterator = idle.descendingIterator();
+				while (iterator.hasNext()) {
+					Connection connection = iterator.next();
+					if (now != Long.MAX_VALUE && now - connection.lastUsed < idleTimeout) {
+						break;
+					}
+					iterator.remove();
+					expired.add(connection);
+				}
+			}
+			for (Connection connection : expired) {
+				connection.closeSocket();
+			}
+			if (!expired.isEmpty()) {
+				synchronized (HttpConnectionPool.this) {
+					forget(this);
+				}
+			}
+		}
+
+		/**
+		 * Gives back a connection.
+		 *
+		 * @param connection the connection
+		 * @param reusable   whether the connection can be used again
+		 */
+		private void release(Connection connection, boolean reusable) {
+			if (reusable && !closed) {
+				connection.lastUsed = System.currentTimeMillis();
+				synchronized (idle) {
+					idle.addFirst(connection);
+				}
+			} else {
+				connection.closeSocket();
+			}
+			permits.release();
+			leave(this);
+		}
+	}
+
+	/**
+	 * A connection taken from the pool. Closing it gives it back.
+	 */
+	public class Connection implements Closeable {
+		/** Initalize host */
+		private final Host host;
+
+		/** Initalize socket */
+		private final Socket socket;
+
+		/** Initalize buffered socket input */
+		private final InputStream input;
+
+		/** Initalize request writer */
+		private final PrintWriter writer;
+
+		/** Initalize whether this connection was used before */
+		private boolean reused;
+
+		/** Initalize time the connection was last given back */
+		private long lastUsed;
+
+		/** Initalize headers of the current response */
+		private Map<String, List<String>> headers;
+
+		/** Initalize body of the current response */
+		private Body body;
+
+		/** Initalize decompressed body of the current response, once asked for */
+		private ContentBody content;
+
+		/** Initalize number of body bytes read from the socket */
+		private long wire;
+
+		/** Initalize whether the server keeps the connection open */
+		private boolean keepAlive;
+
+		/** Initalize whether the connection was given back */
+		private boolean released;
+
+		/** Initalize whether a read failed, leaving the response unfinished */
+		private boolean broken;
+
+		/** Initalize deadline of the current request, from {@link System#nanoTime()} */
+		private long deadline;
+
+		/**
+		 * Constructor
+		 *
+		 * @param host   the host
+		 * @param socket the open socket
+		 * @throws IOException if unable to get the socket streams
+		 */
+		private Connection(Host host, Socket socket) throws IOException {
+			this.host = host;
+			this.socket = socket;
+			try {
+				this.input = new BufferedInputStream(new TimedInput(socket.getInputStream()));
+				this.writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), UTF_8));
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+			this.reused = false;
+		}
+
+		/**
+		 * Sends a request and reads the response headers.
+		 *
+		 * @param url the url to fetch
+		 * @throws IOException if unable to send the request or read the headers
+		 */
+		private void send(URL url) throws IOException {
+			released = false;
+			broken = false;
+			content = null;
+			wire = 0;
+			deadline = requestTimeout > 0 ? System.nanoTime() + requestTimeout * 1_000_000 : Long.MAX_VALUE;
+			// the TLS handshake, if any, reads during the first write
+			socket.setSoTimeout(nextTimeout());
+			HttpsFetcher.printGetRequest(writer, url, true, true);
+			if (writer.checkError()) {
+				throw new IOException("Unable to send request to " + url.getHost());
+			}
+			headers = HttpsFetcher.getHeaderFields(input);
+			body = Body.of(input, headers);
+			keepAlive = isPersistent(headers);
+		}
+
+		/**
+		 * @return the response headers, in the form of
+		 *         {@link HttpsFetcher#getHeaderFields(InputStream)}
+		 */
+		public Map<String, List<String>> getHeaders() {
+			return headers;
+		}
+
+		/**
+		 * Returns the response body, decompressed if it was sent with a gzip or
+		 * deflate content encoding. Reading more than the maximum body size, after
+		 * decompression, throws an {@link IOException}. Closing the stream does not
+		 * close the connection.
+		 *
+		 * @return the response body
+		 * @throws IOException if the content encoding is not supported
+		 */
+		public InputStream getBody() throws IOException {
+			if (content == null) {
+				String encoding = HttpsFetcher.getHeader(headers, "Content-Encoding");
+				encoding = encoding == null ? "" : encoding.strip().toLowerCase(Locale.ROOT);
+				switch (encoding) {
+					case "", "identity" -> content = new ContentBody(new WireBody(), false);
+					case "gzip", "x-gzip", "deflate" -> content = new ContentBody(new WireBody(), true);
+					default -> throw new IOException("Unsupported Content-Encoding: " + encoding);
+				}
+			}
+			return content;
+		}
+
+		/**
+		 * Returns the socket timeout for the next read, the shorter of the read
+		 * timeout and the time left before the deadline.
+		 *
+		 * @return the timeout in milliseconds, or 0 for none
+		 * @throws SocketTimeoutException if the deadline has passed
+		 */
+		private int nextTimeout() throws SocketTimeoutException {
+			if (deadline == Long.MAX_VALUE) {
+				return readTimeout;
+			}
+			long left = (deadline - System.nanoTime()) / 1_000_000;
+			if (left <= 0) {
+				throw new SocketTimeoutException("Request took longer than " + requestTimeout + " ms");
+			}
+			return (int) Math.min(left, readTimeout > 0 ? readTimeout : Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Gives the connection back to the pool, which keeps it if the server allows
+		 * and the body was read to the end.
+		 */
+		@Override
+		public void close() {
+			if (!released) {
+				released = true;
+				boolean reusable = false;
+				try {
+					if (content != null) {
+						content.end();
+					}
+					reusable = keepAlive && !broken && body.drain(DRAIN_LIMIT);
+				} finally {
+					host.release(this, reusable);
+				}
+			}
+		}
+
+		/**
+		 * Closes the connection and gives up its place in the pool.
+		 */
+		private void discard() {
+			if (!released) {
+				released = true;
+				host.release(this, false);
+			}
+		}
+
+		/**
+		 * Socket input that applies the deadline and read timeout to every read, and
+		 * counts reads that time out.
+		 */
+		private class TimedInput extends FilterInputStream {
+			/**
+			 * @param input the socket input
+			 */
+			private TimedInput(InputStream input) {
+				super(input);
+			}
+
+			@Override
+			public int read() throws IOException {
+				byte[] one = new byte[1];
+				return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				try {
+					socket.setSoTimeout(nextTimeout());
+					return in.read(buffer, offset, length);
+				} catch (SocketTimeoutException e) {
+					if (!broken) {
+						broken = true;
+						timedOut.increment();
+					}
+					throw e;
+				} catch (IOException e) {
+					broken = true;
+					throw e;
+				}
+			}
+		}
+
+		/**
+		 * Response body as read from the socket, counting its bytes.
+		 */
+		private class WireBody extends InputStream {
+			@Override
+			public int read() throws IOException {
+				byte[] one = new byte[1];
+				return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				int read = body.read(buffer, offset, length);
+				if (read > 0) {
+					wire += read;
+				}
+				return read;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return body.available();
+			}
+		}
+
+		/**
+		 * Response body after decompression, which gives up once it passes the
+		 * maximum body size.
+		 */
+		private class ContentBody extends InputStream {
+			/** Initalize body as read from the socket */
+			private final WireBody raw;
+
+			/** Initalize whether the body is compressed */
+			private final boolean encoded;
+
+			/** Initalize stream that decompresses the body, once the body is read */
+			private InputStream decoded;
+
+			/** Initalize number of bytes read */
+			private long count;
+
+			/**
+			 * @param raw     the body as read from the socket
+			 * @param encoded whether the body is compressed
+			 */
+			private ContentBody(WireBody raw, boolean encoded) {
+				this.raw = raw;
+				this.encoded = encoded;
+				this.decoded = encoded ? null : raw;
+				this.count = 0;
+			}
+
+			@Override
+			public int read() throws IOException {
+				byte[] one = new byte[1];
+				return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				if (decoded == null) {
+					decoded = decompress(raw);
+				}
+				if (maxBodySize <= 0) {
+					return count(decoded.read(buffer, offset, length));
+				}
+				if (!encoded && body.length() > maxBodySize) {
+					tooLarge();
+				}
+				// read at most one byte past the limit to tell whether the body is longer
+				int read = count(decoded.read(buffer, offset, (int) Math.min(length, maxBodySize - count + 1)));
+				if (count > maxBodySize) {
+					tooLarge();
+				}
+				return read;
+			}
+
+			/**
+			 * Adds bytes read to the count.
+			 *
+			 * @param read the number of bytes read, or -1 at the end of the body
+			 * @return the number of bytes read
+			 */
+			private int count(int read) {
+				if (read > 0) {
+					count += read;
+				}
+				return read;
+			}
+
+			/**
+			 * Gives up on the body.
+			 *
+			 * @throws IOException always
+			 */
+			private void tooLarge() throws IOException {
+				if (!broken) {
+					broken = true;
+					truncated.increment();
+				}
+				throw new IOException("Response body is larger than " + maxBodySize + " bytes");
+			}
+
+			@Override
+			public int available() throws IOException {
+				return decoded == null ? 0 : decoded.available();
+			}
+
+			/**
+			 * Frees the decompressor and adds the bytes read to the pool counters.
+			 */
+			private void end() {
+				if (encoded) {
+					compressed.increment();
+					if (decoded != null) {
+						try {
+							decoded.close();
+						} catch (IOException e) {
+							// closing the body leaves the socket open
+						}
+					}
+				}
+				wireBytes.add(wire);
+				contentBytes.add(count);
+			}
+		}
+
+		/**
+		 * Closes the socket, ignoring errors.
+		 */
+		private void closeSocket() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing left to do with the connection
+			}
+		}
+	}
+
+	/**
+	 * Wraps a gzip or deflate body in a stream that decompresses it. Servers mix
+	 * up gzip, deflate with the zlib header, and raw deflate, so the first two
+	 * bytes decide which one this is. An empty body stays empty.
+	 *
+	 * @param raw the compressed body
+	 * @return the decompressed body
+	 * @throws IOException if unable to read the start of the body, or it is not
+	 *                     valid gzip
+	 */
+	private static InputStream decompress(InputStream raw) throws IOException {
+		PushbackInputStream input = new PushbackInputStream(raw, 2);
+		byte[] start = new byte[2];
+		int read = input.readNBytes(start, 0, 2);
+		if (read == 0) {
+			return InputStream.nullInputStream();
+		}
+		input.unread(start, 0, read);
+		if (read == 2 && (start[0] & 0xFF) == 0x1F && (start[1] & 0xFF) == 0x8B) {
+			return new GZIPInputStream(input, 8192);
+		}
+		int header = (start[0] & 0xFF) << 8 | (start[1] & 0xFF);
+		boolean zlib = read == 2 && (start[0] & 0x0F) == 8 && header % 31 == 0;
+		Inflater inflater = new Inflater(!zlib);
+		return new InflaterInputStream(input, inflater, 8192) {
+			@Override
+			public void close() throws IOException {
+				inflater.end();
+				super.close();
+			}
+		};
+	}
+
+	/**
+	 * Whether the server keeps a connection open after the response.
+	 *
+	 * @param headers the response headers
+	 * @return true if the connection can be reused
+	 */
+	private static boolean isPersistent(Map<String, List<String>> headers) {
+		String status = headers.get(null).get(0);
+		String connection = HttpsFetcher.getHeader(headers, "Connection");
+		return status.startsWith("HTTP/1.1")
+				&& (connection == null || !connection.toLowerCase(Locale.ROOT).contains("close"));
+	}
+
+	/**
+	 * A response body read from the socket, ending where its framing says it ends.
+	 */
+	private abstract static class Body extends InputStream {
+		/** Initalize socket input */
+		protected final InputStream input;
+
+		/**
+		 * @param input the socket input
+		 */
+		protected Body(InputStream input) {
+			this.input = input;
+		}
+
+		/**
+		 * Returns the body of a response.
+		 *
+		 * @param input   the socket input, positioned after the headers
+		 * @param headers the response headers
+		 * @return the body
+		 * @throws IOException if the framing headers are invalid
+		 */
+		private static Body of(InputStream input, Map<String, List<String>> headers) throws IOException {
+			int status = HtmlFetcher.getStatusCode(headers);
+			if ((status >= 100 && status < 200) || status == 204 || status == 304) {
+				return new FixedLength(input, 0);
+			}
+			String encoding = HttpsFetcher.getHeader(headers, "Transfer-Encoding");
+			if (encoding != null && encoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+				return new Chunked(input);
+			}
+			String length = HttpsFetcher.getHeader(headers, "Content-Length");
+			if (length != null) {
+				long bytes;
+				try {
+					bytes = Long.parseLong(length.strip());
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid Content-Length: " + length);
+				}
+				if (bytes < 0) {
+					throw new IOException("Invalid Content-Length: " + length);
+				}
+				return new FixedLength(input, bytes);
+			}
+			return new UntilClose(input);
+		}
+
+		/**
+		 * @return true if the whole body was read
+		 */
+		protected abstract boolean isComplete();
+
+		/**
+		 * @return the length of the body if known in advance, otherwise -1
+		 */
+		protected long length() {
+			return -1;
+		}
+
+		/**
+		 * Reads and drops the rest of the body, if it is small.
+		 *
+		 * @param limit the most bytes to read
+		 * @return true if the whole body was read
+		 */
+		private boolean drain(int limit) {
+			try {
+				long skipped = 0;
+				byte[] buffer = new byte[512];
+				int read;
+				while (!isComplete() && skipped <= limit && (read = read(buffer)) >= 0) {
+					skipped += read;
+				}
+			} catch (IOException e) {
+				return false;
+			}
+			return isComplete();
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public void close() {
+			// the socket stays open for the next response
+		}
+	}
+
+	/**
+	 * A body with a known length.
+	 */
+	private static class FixedLength extends Body {
+		/** Initalize length of the body */
+		private final long length;
+
+		/** Initalize bytes left to read */
+		private long remaining;
+
+		/**
+		 * @param input  the socket input
+		 * @param length the length of the body
+		 */
+		private FixedLength(InputStream input, long length) {
+			super(input);
+			this.length = length;
+			this.remaining = length;
+		}
+
+		@Override
+		protected long length() {
+			return length;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+			if (read < 0) {
+				throw new EOFException("Connection closed with " + remaining + " bytes of the body left");
+			}
+			remaining -= read;
+			return read;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(remaining, input.available());
+		}
+
+		@Override
+		protected boolean isComplete() {
+			return remaining <= 0;
+		}
+	}
+
+	/**
+	 * A body sent in chunks, each preceded by its length.
+	 */
+	private static class Chunked extends Body {
+		/** Initalize bytes left in the current chunk */
+		private long remaining;
+
+		/** Initalize whether the last chunk was read */
+		private boolean done;
+
+		/**
+		 * @param input the socket input
+		 */
+		private Chunked(InputStream input) {
+			super(input);
+			this.remaining = 0;
+			this.done = false;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (done) {
+				return -1;
+			}
+			if (remaining == 0) {
+				nextChunk();
+				if (done) {
+					return -1;
+				}
+			}
+			int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+			if (read < 0) {
+				throw new EOFException("Connection closed in the middle of a chunk");
+			}
+			remaining -= read;
+			if (remaining == 0) {
+				HttpsFetcher.readLine(input);
+			}
+			return read;
+		}
+
+		/**
+		 * Reads the length of the next chunk, and the trailers after the last one.
+		 *
+		 * @throws IOException if unable to read the chunk length
+		 */
+		private void nextChunk() throws IOException {
+			String line = HttpsFetcher.readLine(input);
+			if (line == null) {
+				throw new EOFException("Connection closed before the last chunk");
+			}
+			int extension = line.indexOf(';');
+			String size = (extension < 0 ? line : line.substring(0, extension)).strip();
+			try {
+				remaining = Long.parseLong(size, 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid chunk size: " + line);
+			}
+			if (remaining < 0) {
+				throw new IOException("Invalid chunk size: " + line);
+			}
+			if (remaining == 0) {
+				while ((line = HttpsFetcher.readLine(input)) != null && !line.isEmpty()) {
+					// trailers are not used
+				}
+				done = true;
+			}
+		}
+
+		@Override
+		protected boolean isComplete() {
+			return done;
+		}
+	}
+
+	/**
+	 * A body that ends when the server closes the connection.
+	 */
+	private static class UntilClose extends Body {
+		/**
+		 * @param input the socket input
+		 */
+		private UntilClose(InputStream input) {
+			super(input);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return input.read(buffer, offset, length);
+		}
+
+		@Override
+		protected boolean isComplete() {
+			// the connection is closed, so it can never be reused
+			return false;
+		}
+	}
+}
@@ -3,11 +3,16 @@ package edu.usfca.cs272;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
@@ -85,6 +90,39 @@ public class HttpsFetcher {
 		return factory.createSocket(host, port);
 	}
 
+	/**
+	 * Opens a connection like {@link #openConnection(URL)}, giving up if the
+	 * connection is not established within the timeout.
+	 *
+	 * @param url     the url to connect
+	 * @param timeout the connect timeout in milliseconds, or 0 for none
+	 * @return a socket connection for that url
+	 * @throws UnknownHostException   if the host is not known
+	 * @throws SocketTimeoutException if the timeout expires before connecting
+	 * @throws IOException            if an I/O error occurs when creating the
+	 *                                socket
+	 */
+	public static Socket openConnection(URL url, int timeout) throws UnknownHostException, IOException {
+		String protocol = url.getProtocol();
+		String host = url.getHost();
+
+		boolean https = protocol != null && protocol.equalsIgnoreCase("https");
+		int defaultPort = https ? 443 : 80;
+		int port = url.getPort() < 0 ? defaultPort : url.getPort();
+
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), timeout);
+			if (!https) {
+				return socket;
+			}
+			return ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+		} catch (IOException | RuntimeException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
 	/**
 	 * Writes a simple HTTP GET request to the provided socket writer.
 	 *
@@ -93,12 +131,44 @@ public class HttpsFetcher {
 	 * @throws IOException if unable to write request to socket
 	 */
 	public static void printGetRequest(PrintWriter writer, URL url) throws IOException {
+		printGetRequest(writer, url, false);
+	}
+
+	/**
+	 * Writes a simple HTTP GET request to the provided socket writer, asking the
+	 * server to either keep the connection open for more requests or close it
+	 * after the response.
+	 *
+	 * @param writer    a writer created from a socket connection
+	 * @param url       the url to fetch via the socket connection
+	 * @param keepAlive whether to ask for the connection to stay open
+	 * @throws IOException if unable to write request to socket
+	 */
+	public static void printGetRequest(PrintWriter writer, URL url, boolean keepAlive) throws IOException {
+		printGetRequest(writer, url, keepAlive, false);
+	}
+
+	/**
+	 * Writes a simple HTTP GET request to the provided socket writer, optionally
+	 * telling the server it may send the body compressed with gzip or deflate.
+	 *
+	 * @param writer     a writer created from a socket connection
+	 * @param url        the url to fetch via the socket connection
+	 * @param keepAlive  whether to ask for the connection to stay open
+	 * @param compressed whether to accept a gzip or deflate body
+	 * @throws IOException if unable to write request to socket
+	 */
+	public static void printGetRequest(PrintWriter writer, URL url, boolean keepAlive, boolean compressed)
+			throws IOException {
 		String host = url.getHost();
 		String resource = url.getFile().isBlank() ? "/" : url.getFile();
 
 		writer.printf("GET %s HTTP/1.1\r\n", resource);
 		writer.printf("Host: %s\r\n", host);
-		writer.printf("Connection: close\r\n");
+		writer.printf("Connection: %s\r\n", keepAlive ? "keep-alive" : "close");
+		if (compressed) {
+			writer.printf("Accept-Encoding: gzip, deflate\r\n");
+		}
 		writer.printf("\r\n");
 		writer.flush();
 	}
@@ -128,4 +198,74 @@ public class HttpsFetcher {
 
 		return results;
 	}
+
+	/**
+	 * Gets the header fields from the input stream of a socket connection, in the
+	 * same form as {@link #getHeaderFields(BufferedReader)}. Unlike a reader, the
+	 * stream is left exactly at the start of the body, so the body can be framed
+	 * and the connection reused.
+	 *
+	 * @param response the input stream of a socket connection
+	 * @return a map of header fields to a list of header values
+	 * @throws IOException if unable to read from socket or the connection was
+	 *                     closed before the status line
+	 */
+	public static Map<String, List<String>> getHeaderFields(InputStream response) throws IOException {
+		String line = readLine(response);
+		if (line == null) {
+			throw new EOFException("Connection closed before the status line");
+		}
+		Map<String, List<String>> results = new HashMap<>();
+		results.put(null, List.of(line));
+		while ((line = readLine(response)) != null && !line.isBlank()) {
+			String[] split = line.split(":\\s*", 2);
+			if (split.length == 2) {
+				results.putIfAbsent(split[0], new ArrayList<>());
+				results.get(split[0]).add(split[1].strip());
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Returns the first value of a header, ignoring the case of the header name.
+	 *
+	 * @param headers the HTTP/1.1 headers
+	 * @param name    the header name
+	 * @return the first value of the header, or null if there is none
+	 */
+	public static String getHeader(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+				return entry.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a line ending in a line feed (and optionally a carriage return) from a
+	 * stream, without reading past it.
+	 *
+	 * @param input the stream to read from
+	 * @return the line without its ending, or null if the stream ended first
+	 * @throws IOException if unable to read from the stream
+	 */
+	public static String readLine(InputStream input) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = input.read()) >= 0 && b != '\n') {
+			line.write(b);
+		}
+		if (b < 0 && line.size() == 0) {
+			return null;
+		}
+		int length = line.size();
+		byte[] bytes = line.toByteArray();
+		if (length > 0 && bytes[length - 1] == '\r') {
+			length--;
+		}
+		return new String(bytes, 0, length, UTF_8);
+	}
 }
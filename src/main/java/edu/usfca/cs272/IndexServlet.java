@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.Set;
 
 import jakarta.servlet.ServletException;
@@ -26,12 +27,12 @@ public class IndexServlet extends HttpServlet {
 	/*
 	 * initalize index
 	 */
-	private ThreadSafeIndex index;
+	private InvertedIndex index;
 
 	/**
-	 * @param current InvertedIndex to use for Database
+	 * @param current index to use for Database, safe for concurrent reads
 	 */
-	public IndexServlet(ThreadSafeIndex current) {
+	public IndexServlet(InvertedIndex current) {
 		super();
 		this.index = current;
 	}
@@ -50,16 +51,24 @@ public class IndexServlet extends HttpServlet {
 		} else {
 			response.setContentType("text/html");
 			response.setCharacterEncoding("UTF-8");
-			String htmlContent = generateIndexPage();
+			String htmlContent = generateIndexPage(request.getParameter("prefix"));
 			response.getWriter().write(htmlContent);
 		}
 	}
 
-	private String generateIndexPage() {
-		Set<String> words = index.getWords();
+	/**
+	 * lists every word in the index, or only the words starting with a prefix
+	 * 
+	 * @param prefix the prefix to list words for, or null to list every word
+	 * @return the html page listing the words
+	 */
+	private String generateIndexPage(String prefix) {
+		TermDictionary terms = index.getTerms();
+		int[] range = prefix == null ? new int[] { 0, terms.size() } : terms.prefixRange(prefix);
 		StringBuilder resultsHtml = new StringBuilder();
 
-		for (String word : words) {
+		for (Iterator<String> words = terms.iterator(range[0], range[1]); words.hasNext();) {
+			String word = words.next();
 			resultsHtml.append("<li><a href=\"/index?word=").append(word).append("\">").append(word)
 					.append("</a></li>");
 		}
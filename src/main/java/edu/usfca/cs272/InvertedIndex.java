@@ -1,44 +1,147 @@
 package edu.usfca.cs272;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 /**
  * index that stores inverted index data. the keys are words, and the values are
- * maps that associate file paths with lists of line numbers containing the word
- * position in said file
+ * maps that associate document IDs with lists of line numbers containing the
+ * word position in said file
  *
- * also stores word counts via a seperate map
+ * locations (file paths or URLs) are only stored once, in a {@link DocumentTable}
+ * that assigns each location its ID. word counts are stored in an array indexed
+ * by the same IDs
  *
  * @author Grayson Ruehlmann
  * @author CS 272 Software Development (University of San Francisco)
  * @version Spring 2023
  */
 public class InvertedIndex {
+	/**
+	 * number of prefix searches the index must answer without changing before its
+	 * words are frozen. freezing costs as much as scanning every word, so an index
+	 * that is still being written is searched through the map of words instead
+	 */
+	private static final int FREEZE_AFTER = 16;
 
 	/**
 	 * initalize index
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	private final TreeMap<String, TreeMap<Integer, PositionList>> index;
+	/**
+	 * initalize documents
+	 */
+	private final DocumentTable documents;
+	/**
+	 * initalize count, indexed by document ID
+	 */
+	private int[] counts;
+	/**
+	 * initalize frozen words, built once the index is stable and dropped whenever
+	 * the index changes
+	 */
+	private volatile FrozenWords frozen;
 	/**
-	 * initalize count
+	 * initalize stable searches, the number of prefix searches answered since the
+	 * index last changed. only a hint, so racing readers may lose updates
 	 */
-	private final TreeMap<String, Integer> counts;
+	private volatile int stableSearches;
+	/**
+	 * initalize generation, bumped every time the index changes
+	 */
+	private volatile long generation;
 
 	/**
 	 * default constructor
 	 */
 	public InvertedIndex() {
-		index = new TreeMap<>();
-		counts = new TreeMap<>();
+		this(new DocumentTable());
+	}
+
+	/**
+	 * Constructor that shares an existing document table, so that indexes built
+	 * separately can be merged without translating document IDs
+	 * 
+	 * @param documents the document table to assign IDs from
+	 */
+	public InvertedIndex(DocumentTable documents) {
+		this.index = new TreeMap<>();
+		this.documents = documents;
+		this.counts = new int[0];
+	}
+
+	/**
+	 * Constructor for read-only indexes that keep their postings elsewhere and
+	 * only supply the document table and word counts
+	 * 
+	 * @param documents the document table of the index
+	 * @param counts    the word counts, indexed by document ID
+	 */
+	protected InvertedIndex(DocumentTable documents, int[] counts) {
+		this.index = new TreeMap<>();
+		this.documents = documents;
+		this.counts = counts;
+	}
+
+	/**
+	 * Copy constructor that shares the postings of another index. Only the map of
+	 * words and the word counts are copied, so this is cheap, but the postings
+	 * must only be changed through {@link #merge(InvertedIndex, boolean)} with
+	 * copy-on-write enabled
+	 * 
+	 * @param base the index to copy
+	 */
+	protected InvertedIndex(InvertedIndex base) {
+		this(base, base.documents);
+	}
+
+	/**
+	 * Copy constructor that shares the postings of another index, like
+	 * {@link #InvertedIndex(InvertedIndex)}, but uses the given document table
+	 * 
+	 * @param base      the index to copy
+	 * @param documents the document table of the copy, holding every document of
+	 *                  the index to copy
+	 */
+	protected InvertedIndex(InvertedIndex base, DocumentTable documents) {
+		this.index = new TreeMap<>(base.index);
+		this.documents = documents;
+		this.counts = base.counts.clone();
+		this.generation = base.generation;
+	}
+
+	/**
+	 * returns a copy of the index to read, such as to write it out while this
+	 * index goes on changing. later changes to this index do not affect the copy,
+	 * but the copy may share data with it, so it must not be changed itself
+	 * 
+	 * @return the read-only copy
+	 */
+	public InvertedIndex copy() {
+		InvertedIndex copy = new InvertedIndex(documents.copy());
+		for (var entry : index.entrySet()) {
+			TreeMap<Integer, PositionList> locations = new TreeMap<>();
+			for (var location : entry.getValue().entrySet()) {
+				locations.put(location.getKey(), location.getValue().copy());
+			}
+			copy.index.put(entry.getKey(), locations);
+		}
+		copy.counts = counts.clone();
+		copy.generation = generation;
+		return copy;
 	}
 
 	/*
@@ -48,7 +151,20 @@ public class InvertedIndex {
 	 */
 	@Override
 	public String toString() {
-		return index.toString();
+		TreeMap<String, Map<String, PositionList>> readable = new TreeMap<>();
+		for (var entry : index.entrySet()) {
+			readable.put(entry.getKey(), byLocation(entry.getValue()));
+		}
+		return readable.toString();
+	}
+
+	/**
+	 * returns the document table used to assign document IDs
+	 * 
+	 * @return the document table of this index
+	 */
+	public DocumentTable getDocuments() {
+		return documents;
 	}
 
 	/**
@@ -68,12 +184,46 @@ public class InvertedIndex {
 	 * @param value numbers to add
 	 */
 	public void addData(String word, String path, Integer value) {
-		index.putIfAbsent(word, new TreeMap<String, TreeSet<Integer>>());
-		index.get(word).putIfAbsent(path, new TreeSet<Integer>());
-		index.get(word).get(path).add(value);
-		int max = counts.getOrDefault(path, 0);
-		if (value > max) {
-			counts.put(path, value);
+		int document = documents.add(path);
+		var locations = index.computeIfAbsent(word, w -> new TreeMap<Integer, PositionList>());
+		locations.computeIfAbsent(document, d -> new PositionList()).add(value);
+		updateCount(document, value);
+		changed();
+	}
+
+	/**
+	 * marks the index as changed, dropping the frozen words and moving to the next
+	 * generation
+	 */
+	private void changed() {
+		frozen = null;
+		stableSearches = 0;
+		generation++;
+	}
+
+	/**
+	 * returns the generation of the index. the generation changes every time the
+	 * index changes, so anything computed from the index is still current as long
+	 * as the generation it was computed from is
+	 * 
+	 * @return the generation of the index
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * raises the word count of a document to the given value if it is larger
+	 * 
+	 * @param document document ID to update
+	 * @param value    candidate word count
+	 */
+	private void updateCount(int document, int value) {
+		if (document >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(document + 1, counts.length * 2));
+		}
+		if (value > counts[document]) {
+			counts[document] = value;
 		}
 	}
 
@@ -96,35 +246,152 @@ public class InvertedIndex {
 	 * @param other The other InvertedIndex to get data from
 	 */
 	public void addAll(InvertedIndex other) {
-		for (var wordEntry : other.index.entrySet()) {
+		merge(other, false);
+	}
+
+	/**
+	 * Adds all the contents of another InvertedIndex to this index. With
+	 * copy-on-write, postings that already belong to this index are never
+	 * modified: a word's postings are copied before they change, so another index
+	 * sharing them is unaffected
+	 *
+	 * @param other       The other InvertedIndex to get data from
+	 * @param copyOnWrite true to copy existing postings instead of changing them
+	 */
+	protected void merge(InvertedIndex other, boolean copyOnWrite) {
+		changed();
+		int[] translated = translate(other);
+		for (var wordEntry : other.postings().entrySet()) {
 			String word = wordEntry.getKey();
 			var otherLocations = wordEntry.getValue();
 			var thisLocations = this.index.get(word);
-			if (thisLocations == null) {
+			if (thisLocations == null && translated == null) {
+				for (PositionList positions : otherLocations.values()) {
+					positions.trimToSize();
+				}
 				this.index.put(word, otherLocations);
-			} else {
-				for (var locationEntry : otherLocations.entrySet()) {
-					String path = locationEntry.getKey();
-					TreeSet<Integer> otherPositions = locationEntry.getValue();
-					TreeSet<Integer> thisPositions = thisLocations.get(path);
-					if (thisPositions == null) {
-						thisLocations.put(path, otherPositions);
-					} else {
-						thisPositions.addAll(otherPositions);
-					}
+				continue;
+			}
+			if (thisLocations == null) {
+				thisLocations = new TreeMap<>();
+				this.index.put(word, thisLocations);
+			} else if (copyOnWrite) {
+				thisLocations = new TreeMap<>(thisLocations);
+				this.index.put(word, thisLocations);
+			}
+			for (var locationEntry : otherLocations.entrySet()) {
+				int document = translated == null ? locationEntry.getKey() : translated[locationEntry.getKey()];
+				PositionList otherPositions = locationEntry.getValue();
+				PositionList thisPositions = thisLocations.get(document);
+				if (thisPositions == null) {
+					otherPositions.trimToSize();
+					thisLocations.put(document, otherPositions);
+				} else if (copyOnWrite) {
+					thisPositions = thisPositions.copy();
+					thisPositions.addAll(otherPositions);
+					thisLocations.put(document, thisPositions);
+				} else {
+					thisPositions.addAll(otherPositions);
 				}
 			}
 		}
-		for (var countEntry : other.counts.entrySet()) {
-			String path = countEntry.getKey();
-			int otherCount = countEntry.getValue();
-			int thisCount = this.counts.getOrDefault(path, 0);
-			if (otherCount > thisCount) {
-				this.counts.put(path, otherCount);
+		int[] otherCounts = other.counts();
+		for (int otherId = 0; otherId < otherCounts.length; otherId++) {
+			if (otherCounts[otherId] > 0) {
+				int document = translated == null ? otherId : translated[otherId];
+				updateCount(document, otherCounts[otherId]);
 			}
 		}
 	}
 
+	/**
+	 * Adds a parsed document to this index, sorting its words in one step
+	 *
+	 * @param document the words of the document to add
+	 */
+	public void addAll(DocumentAccumulator document) {
+		merge(document, false);
+	}
+
+	/**
+	 * Adds a parsed document to this index. Documents without any words are not
+	 * added. With copy-on-write, postings that already belong to this index are
+	 * never modified, like {@link #merge(InvertedIndex, boolean)}
+	 *
+	 * @param document    the words of the document to add
+	 * @param copyOnWrite true to copy existing postings instead of changing them
+	 */
+	protected void merge(DocumentAccumulator document, boolean copyOnWrite) {
+		changed();
+		if (document.isEmpty()) {
+			return;
+		}
+		int id = documents.add(document.getLocation());
+		document.visitSorted((word, positions) -> {
+			positions.trimToSize();
+			var locations = this.index.get(word);
+			if (locations == null) {
+				locations = new TreeMap<>();
+				this.index.put(word, locations);
+			} else if (copyOnWrite) {
+				locations = new TreeMap<>(locations);
+				this.index.put(word, locations);
+			}
+			PositionList existing = locations.get(id);
+			if (existing == null) {
+				locations.put(id, positions);
+			} else if (copyOnWrite) {
+				existing = existing.copy();
+				existing.addAll(positions);
+				locations.put(id, existing);
+			} else {
+				existing.addAll(positions);
+			}
+		});
+		updateCount(id, document.length());
+	}
+
+	/**
+	 * returns the postings of the index, read by
+	 * {@link #merge(InvertedIndex, boolean)} when this index is merged into
+	 * another. indexes that keep their postings elsewhere supply them here
+	 * 
+	 * @return map of words to document IDs to positions
+	 */
+	protected Map<String, TreeMap<Integer, PositionList>> postings() {
+		return index;
+	}
+
+	/**
+	 * returns the word counts of the index, read by
+	 * {@link #merge(InvertedIndex, boolean)} when this index is merged into
+	 * another. indexes that keep their counts elsewhere supply them here
+	 * 
+	 * @return the word counts, indexed by document ID
+	 */
+	protected int[] counts() {
+		return counts;
+	}
+
+	/**
+	 * maps the document IDs of another index to IDs in this index
+	 * 
+	 * @param other the index whose IDs need translating
+	 * @return array of this index's IDs indexed by the other index's IDs, or null
+	 *         if both indexes share the same document table
+	 */
+	private int[] translate(InvertedIndex other) {
+		DocumentTable otherDocuments = other.getDocuments();
+		if (otherDocuments == this.documents) {
+			return null;
+		}
+		int[] translated = new int[otherDocuments.size()];
+		for (int otherId = 0; otherId < translated.length; otherId++) {
+			translated[otherId] = documents.add(otherDocuments.location(otherId));
+		}
+		return translated;
+	}
+
 	/**
 	 * checks if the index has data stored for a specific word
 	 * 
@@ -144,7 +411,7 @@ public class InvertedIndex {
 	 *         associated with the word
 	 */
 	public boolean hasPath(String word, String filePath) {
-		return index.containsKey(word) && index.get(word).containsKey(filePath);
+		return index.containsKey(word) && index.get(word).containsKey(documents.indexOf(filePath));
 	}
 
 	/**
@@ -154,7 +421,7 @@ public class InvertedIndex {
 	 * @return true if word is present in filePath at position
 	 */
 	public boolean hasPosition(String word, String filePath, int position) {
-		return hasPath(word, filePath) && index.get(word).get(filePath).contains(position);
+		return hasPath(word, filePath) && index.get(word).get(documents.indexOf(filePath)).contains(position);
 	}
 
 	/**
@@ -164,7 +431,7 @@ public class InvertedIndex {
 	 * @return true if word has data in the wordcount structure
 	 */
 	public boolean hasCount(String filePath) {
-		return counts.containsKey(filePath);
+		return numCounts(filePath) > 0;
 	}
 
 	/**
@@ -174,8 +441,13 @@ public class InvertedIndex {
 	 * @return set of all filepaths containing the given word
 	 */
 	public Set<String> getPaths(String word) {
-		if (index.containsKey(word)) {
-			return Collections.unmodifiableSet(index.get(word).keySet());
+		var locations = index.get(word);
+		if (locations != null) {
+			TreeSet<String> paths = new TreeSet<>();
+			for (int document : locations.keySet()) {
+				paths.add(documents.location(document));
+			}
+			return Collections.unmodifiableSet(paths);
 		}
 		return Collections.emptySet();
 	}
@@ -189,7 +461,7 @@ public class InvertedIndex {
 	 */
 	public Set<Integer> getPositions(String word, String filePath) {
 		if (this.hasPath(word, filePath)) {
-			return Collections.unmodifiableSet(index.get(word).get(filePath));
+			return Collections.unmodifiableSet(index.get(word).get(documents.indexOf(filePath)));
 		}
 		return Collections.emptySet();
 	}
@@ -203,13 +475,45 @@ public class InvertedIndex {
 		return Collections.unmodifiableSet(index.keySet());
 	}
 
+	/**
+	 * returns a frozen dictionary of every word in the index, in sorted order. the
+	 * dictionary is built the first time it is needed after the index changes, and
+	 * is never modified, so it may be kept and read after the index changes
+	 * 
+	 * @return dictionary of all words contained in the index
+	 */
+	public TermDictionary getTerms() {
+		return freeze().terms;
+	}
+
+	/**
+	 * returns the frozen words of the index, building them if the index changed
+	 * since they were last built
+	 * 
+	 * @return the frozen words of the index
+	 */
+	private FrozenWords freeze() {
+		FrozenWords current = frozen;
+		if (current == null) {
+			current = new FrozenWords(index);
+			frozen = current;
+		}
+		return current;
+	}
+
 	/**
 	 * retrieves the word count data of the index
 	 * 
 	 * @return a map containing files and their word counts
 	 */
 	public Map<String, Integer> getCounts() {
-		return Collections.unmodifiableMap(counts);
+		TreeMap<String, Integer> paths = new TreeMap<>();
+		for (int document = 0; document < counts.length; document++) {
+			if (counts[document] > 0) {
+				paths.put(documents.location(document), counts[document]);
+			}
+		}
+		return Collections.unmodifiableMap(paths);
 	}
 
 	/**
@@ -230,7 +534,8 @@ public class InvertedIndex {
 	 * @return the number of paths that the word appears in.
 	 */
 	public int numPaths(String word) {
-		return getPaths(word).size();
+		var locations = index.get(word);
+		return locations == null ? 0 : locations.size();
 	}
 
 	/**
@@ -242,7 +547,9 @@ public class InvertedIndex {
 	 * @return the number of times the word appears in the file.
 	 */
 	public int numPositions(String word, String filePath) {
-		return getPositions(word, filePath).size();
+		var locations = index.get(word);
+		PositionList positions = locations == null ? null : locations.get(documents.indexOf(filePath));
+		return positions == null ? 0 : positions.size();
 	}
 
 	/**
@@ -253,7 +560,17 @@ public class InvertedIndex {
 	 * @return the total number of words in the file.
 	 */
 	public int numCounts(String filePath) {
-		return this.counts.getOrDefault(filePath, 0);
+		return numCounts(documents.indexOf(filePath));
+	}
+
+	/**
+	 * retrieves the total number of words in a specific document.
+	 * 
+	 * @param document the ID of the document
+	 * @return the total number of words in the document
+	 */
+	private int numCounts(int document) {
+		return document >= 0 && document < counts.length ? counts[document] : 0;
 	}
 
 	/**
@@ -263,7 +580,7 @@ public class InvertedIndex {
 	 * @throws IOException when an IOException occurs
 	 */
 	public void writeIndex(Path filePath) throws IOException {
-		JsonWriter.writeInverted(index, filePath);
+		JsonWriter.writeInverted(index, documents::location, filePath);
 	}
 
 	/**
@@ -276,6 +593,65 @@ public class InvertedIndex {
 		JsonWriter.writeObject(this.getCounts(), filePath);
 	}
 
+	/**
+	 * writes the index to a provided path in a compact binary format that can be
+	 * loaded back with {@link MappedIndex#open(Path)}
+	 * 
+	 * @param filePath file path we want to write to
+	 * @throws IOException when an IOException occurs
+	 * 
+	 * @see MappedIndex
+	 */
+	public void writeBinary(Path filePath) throws IOException {
+		int numDocuments = documents.size();
+		byte[][] paths = new byte[numDocuments][];
+		long offset = Integer.BYTES * 4;
+		for (int document = 0; document < numDocuments; document++) {
+			paths[document] = documents.location(document).getBytes(StandardCharsets.UTF_8);
+			offset += Integer.BYTES * 2 + paths[document].length;
+		}
+		byte[][] words = new byte[index.size()][];
+		int i = 0;
+		for (String word : index.keySet()) {
+			words[i] = word.getBytes(StandardCharsets.UTF_8);
+			offset += Integer.BYTES * 2 + words[i].length;
+			i++;
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(filePath)))) {
+			out.writeInt(MappedIndex.MAGIC);
+			out.writeInt(MappedIndex.VERSION);
+			out.writeInt(numDocuments);
+			for (int document = 0; document < numDocuments; document++) {
+				out.writeInt(paths[document].length);
+				out.write(paths[document]);
+				out.writeInt(numCounts(document));
+			}
+			out.writeInt(words.length);
+			i = 0;
+			for (var locations : index.values()) {
+				if (offset > Integer.MAX_VALUE) {
+					throw new IOException("Index is too large for the binary format: " + offset + " bytes");
+				}
+				out.writeInt(words[i].length);
+				out.write(words[i]);
+				out.writeInt((int) offset);
+				offset += Integer.BYTES;
+				for (PositionList positions : locations.values()) {
+					offset += Integer.BYTES + positions.binaryLength();
+				}
+				i++;
+			}
+			for (var locations : index.values()) {
+				out.writeInt(locations.size());
+				for (var entry : locations.entrySet()) {
+					out.writeInt(entry.getKey());
+					entry.getValue().write(out);
+				}
+			}
+		}
+	}
+
 	/**
 	 * helper method to decide whether or not we conduct an exact or partial search
 	 * on the index
@@ -297,16 +673,7 @@ public class InvertedIndex {
 	 *         and score data for each query
 	 */
 	public List<SearchResult> exactSearch(Set<String> queries) {
-		Map<String, SearchResult> matches = new HashMap<>();
-		List<SearchResult> results = new ArrayList<>();
-		for (String query : queries) {
-			var locations = index.get(query);
-			if (locations != null) {
-				resultsMapping(locations, matches, results);
-			}
-		}
-		Collections.sort(results);
-		return results;
+		return rankMatches(queries, false);
 	}
 
 	/**
@@ -318,45 +685,229 @@ public class InvertedIndex {
 	 *         and score data for each query
 	 */
 	public List<SearchResult> partialSearch(Set<String> queries) {
-		List<SearchResult> results = new ArrayList<>();
-		Map<String, SearchResult> matches = new HashMap<>();
+		return rankMatches(queries, true);
+	}
+
+	/**
+	 * searches the index and returns only the best {@code k} results, in ranked
+	 * order. matching counts are accumulated per document and a bounded heap keeps
+	 * the current best results, so the full list of matches is never sorted. the
+	 * results are the same as the first {@code k} results of
+	 * {@link #indexSearch(Set, boolean)}
+	 * 
+	 * @param queries queries we search the index for
+	 * @param partial true = partial search, false = exact search
+	 * @param k       the maximum number of results to return
+	 * @return up to {@code k} ranked search results
+	 */
+	public List<SearchResult> search(Set<String> queries, boolean partial, int k) {
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
+		Totals totals = new Totals(documents.size());
+		visitMatches(queries, partial, totals);
+		int matched = totals.matched;
+		PriorityQueue<SearchResult> best = new PriorityQueue<>(Math.min(k, matched) + 1, Collections.reverseOrder());
+		for (int i = 0; i < matched; i++) {
+			int document = totals.touched[i];
+			if (best.size() == k) {
+				double score = (double) totals.totals[document] / counts[document];
+				if (score < best.peek().getScore()) {
+					continue;
+				}
+			}
+			SearchResult result = new SearchResult(document);
+			result.calculate(totals.totals[document]);
+			if (best.size() < k) {
+				best.add(result);
+			} else if (result.compareTo(best.peek()) < 0) {
+				best.poll();
+				best.add(result);
+			}
+		}
+		ArrayList<SearchResult> results = new ArrayList<>(best);
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Receives the number of times a word matched by a search appears in a
+	 * document.
+	 */
+	@FunctionalInterface
+	protected static interface MatchVisitor {
+		/**
+		 * Called once for every document of every matched word
+		 * 
+		 * @param document the ID of the document
+		 * @param count    the number of times the word appears in the document
+		 */
+		public void visit(int document, int count);
+	}
+
+	/**
+	 * Adds up the counts of the documents matched by a search, remembering which
+	 * documents were touched so only those are ranked
+	 */
+	private static class Totals implements MatchVisitor {
+		/**
+		 * initalize totals, indexed by document ID
+		 */
+		private final int[] totals;
+		/**
+		 * initalize touched, the IDs of the documents matched, in the order matched
+		 */
+		private int[] touched;
+		/**
+		 * initalize matched, the number of documents matched
+		 */
+		private int matched;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param documents the number of documents in the index
+		 */
+		private Totals(int documents) {
+			this.totals = new int[documents];
+			this.touched = new int[16];
+			this.matched = 0;
+		}
+
+		@Override
+		public void visit(int document, int count) {
+			if (totals[document] == 0) {
+				if (matched == touched.length) {
+					touched = Arrays.copyOf(touched, matched * 2);
+				}
+				touched[matched++] = document;
+			}
+			totals[document] += count;
+		}
+	}
+
+	/**
+	 * visits the postings of every word matched by the queries. with partial
+	 * search a word is visited once for every query it starts with
+	 * 
+	 * @param queries queries we search the index for
+	 * @param partial true = partial search, false = exact search
+	 * @param visitor receives each document and count of each matched word
+	 */
+	protected void visitMatches(Set<String> queries, boolean partial, MatchVisitor visitor) {
+		if (!partial) {
+			for (String query : queries) {
+				var locations = index.get(query);
+				if (locations != null) {
+					visitLocations(locations, visitor);
+				}
+			}
+			return;
+		}
+		FrozenWords words = frozen;
+		if (words == null && ++stableSearches >= FREEZE_AFTER) {
+			words = freeze();
+		}
 		for (String query : queries) {
-			for (var entry : index.tailMap(query).entrySet()) {
-				String word = entry.getKey();
-				if (word.startsWith(query)) {
-					var locations = entry.getValue();
-					resultsMapping(locations, matches, results);
-				} else {
-					break;
+			if (words == null) {
+				for (var entry : index.tailMap(query).entrySet()) {
+					if (!entry.getKey().startsWith(query)) {
+						break;
+					}
+					visitLocations(entry.getValue(), visitor);
 				}
+				continue;
+			}
+			int[] range = words.terms.prefixRange(query);
+			for (int id = range[0]; id < range[1]; id++) {
+				visitLocations(words.postings.get(id), visitor);
 			}
 		}
+	}
+
+	/**
+	 * visits the documents and counts of a single word
+	 * 
+	 * @param locations map containing document IDs and associated word locations
+	 * @param visitor   receives each document and count
+	 */
+	private static void visitLocations(TreeMap<Integer, PositionList> locations, MatchVisitor visitor) {
+		for (var entry : locations.entrySet()) {
+			visitor.visit(entry.getKey(), entry.getValue().size());
+		}
+	}
+
+	/**
+	 * ranks every document matched by the queries
+	 * 
+	 * @param queries queries we search the index for
+	 * @param partial true = partial search, false = exact search
+	 * @return every matching search result, in ranked order
+	 */
+	private List<SearchResult> rankMatches(Set<String> queries, boolean partial) {
+		SearchResult[] matches = new SearchResult[documents.size()];
+		List<SearchResult> results = new ArrayList<>();
+		visitMatches(queries, partial, (document, count) -> resultsMapping(document, count, matches, results));
 		Collections.sort(results);
 		return results;
 	}
 
 	/**
 	 * Private helper method to contain duplicate logic for partial/exact search.
-	 * Most of the logic generates the results list NOTE: could be cleaned up
-	 * probably, but will save that for another time
+	 * Most of the logic generates the results list
 	 * 
-	 * @param locations map containing file location data and associated word
-	 *                  locations
-	 * @param matches   map to populate with a query + searchresult data
-	 * @param results   list of search results to return with the given list of
-	 *                  queries
+	 * @param document ID of a document containing a matched word
+	 * @param count    number of times the word appears in the document
+	 * @param matches  search results found so far, indexed by document ID
+	 * @param results  list of search results to return with the given list of
+	 *                 queries
 	 */
-	private void resultsMapping(TreeMap<String, TreeSet<Integer>> locations, Map<String, SearchResult> matches,
-			List<SearchResult> results) {
+	private void resultsMapping(int document, int count, SearchResult[] matches, List<SearchResult> results) {
+		SearchResult result = matches[document];
+		if (result == null) {
+			result = new SearchResult(document);
+			matches[document] = result;
+			results.add(result);
+		}
+		result.calculate(count);
+	}
+
+	/**
+	 * converts the postings of a word into a map sorted by location
+	 * 
+	 * @param locations map containing document IDs and associated word locations
+	 * @return the same postings keyed by location
+	 */
+	private TreeMap<String, PositionList> byLocation(TreeMap<Integer, PositionList> locations) {
+		TreeMap<String, PositionList> readable = new TreeMap<>();
 		for (var entry : locations.entrySet()) {
-			String location = entry.getKey();
-			int count = entry.getValue().size();
-			SearchResult result = matches.computeIfAbsent(location, loc -> {
-				SearchResult newResult = new SearchResult(loc);
-				results.add(newResult);
-				return newResult;
-			});
-			result.calculate(count);
+			readable.put(documents.location(entry.getKey()), entry.getValue());
+		}
+		return readable;
+	}
+
+	/**
+	 * Sorted snapshot of the words of the index and their postings, indexed by
+	 * term ID, so prefix searches walk an array instead of the map of words
+	 */
+	private static class FrozenWords {
+		/**
+		 * initalize terms
+		 */
+		private final TermDictionary terms;
+		/**
+		 * initalize postings, indexed by term ID
+		 */
+		private final ArrayList<TreeMap<Integer, PositionList>> postings;
+
+		/**
+		 * freezes the words and postings of an index
+		 * 
+		 * @param index map of words to postings to freeze
+		 */
+		private FrozenWords(TreeMap<String, TreeMap<Integer, PositionList>> index) {
+			this.terms = new TermDictionary(index.keySet());
+			this.postings = new ArrayList<>(index.values());
 		}
 	}
 
@@ -376,19 +927,19 @@ public class InvertedIndex {
 		 */
 		private Double score;
 		/**
-		 * Initalize location
+		 * Initalize document
 		 */
-		private final String location;
+		private final int document;
 
 		/**
-		 * Constructor for only location
+		 * Constructor for only a document
 		 * 
-		 * @param location file location we search for given query
+		 * @param document ID of the document we search for given query
 		 */
-		public SearchResult(String location) {
+		public SearchResult(int document) {
 			this.count = 0;
 			this.score = 0.0;
-			this.location = location;
+			this.document = document;
 		}
 
 		/**
@@ -399,7 +950,7 @@ public class InvertedIndex {
 		 */
 		private void calculate(int count) {
 			this.count += count;
-			this.score = (double) this.count / counts.get(location);
+			this.score = (double) this.count / counts[document];
 		}
 
 		/**
@@ -420,12 +971,12 @@ public class InvertedIndex {
 		 * @return the location value of a SearchResult
 		 */
 		public String getLocation() {
-			return location;
+			return documents.location(document);
 		}
 
 		@Override
 		public String toString() {
-			return "{ count: " + count + ", score: " + score + ", location: " + location + " }";
+			return "{ count: " + count + ", score: " + score + ", location: " + getLocation() + " }";
 		}
 
 		@Override
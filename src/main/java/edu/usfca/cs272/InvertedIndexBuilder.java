@@ -1,7 +1,5 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
-
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -10,7 +8,6 @@ import java.nio.file.Path;
 import java.util.List;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Helper method to construct an Inverted Index data structure to be used with a
@@ -29,9 +26,21 @@ public class InvertedIndexBuilder {
 	 * @throws IOException when IOException occurs
 	 */
 	public static void build(Path start, InvertedIndex index) throws IOException {
+		build(start, index, StemmerProvider.ENGLISH);
+	}
+
+	/**
+	 * Building code to construct an InvertedIndex with stemmers from a provider
+	 * 
+	 * @param start    file path to read data from
+	 * @param index    inverted index we wish to construct
+	 * @param stemmers provider of the stemmer to use
+	 * @throws IOException when IOException occurs
+	 */
+	public static void build(Path start, InvertedIndex index, StemmerProvider stemmers) throws IOException {
 		List<Path> files = FileFinder.listText(start, start);
 		for (Path file : files) {
-			parseFile(file, index);
+			parseFile(file, index, stemmers);
 		}
 	}
 
@@ -43,18 +52,44 @@ public class InvertedIndexBuilder {
 	 * @throws IOException when an IOException occurs
 	 */
 	public static void parseFile(Path file, InvertedIndex index) throws IOException {
-		int indexCount = 0;
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
-		String location = file.toString();
+		parseFile(file, index, StemmerProvider.ENGLISH);
+	}
+
+	/**
+	 * Parsing File to construct an inverted index, using the stemmer the provider
+	 * keeps for the calling thread
+	 * 
+	 * @param file     path from which we collect data for the invertedindex
+	 * @param index    inverted index we are constructing
+	 * @param stemmers provider of the stemmer to use
+	 * @throws IOException when an IOException occurs
+	 */
+	public static void parseFile(Path file, InvertedIndex index, StemmerProvider stemmers) throws IOException {
+		index.addAll(parseDocument(file, stemmers));
+	}
+
+	/**
+	 * Parsing File into the words of a single document, without adding it to an
+	 * index yet
+	 * 
+	 * @param file     path from which we collect data for the invertedindex
+	 * @param stemmers provider of the stemmer to use
+	 * @return the words of the file
+	 * @throws IOException when an IOException occurs
+	 */
+	public static DocumentAccumulator parseDocument(Path file, StemmerProvider stemmers) throws IOException {
+		Stemmer stemmer = stemmers.get();
+		Tokenizer tokenizer = new Tokenizer();
+		DocumentAccumulator document = new DocumentAccumulator(file.toString());
 		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
 			String line;
 			while ((line = reader.readLine()) != null) {
-				for (String word : FileStemmer.parse(line)) {
-					String stemmed = stemmer.stem(word).toString();
-					indexCount++;
-					index.addData(stemmed, location, indexCount);
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
+					document.add(stemmer.stem(tokenizer.word()).toString());
 				}
 			}
 		}
+		return document;
 	}
 }
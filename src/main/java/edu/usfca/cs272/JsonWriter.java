@@ -14,6 +14,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
 
 import edu.usfca.cs272.InvertedIndex.SearchResult;
 
@@ -426,6 +428,74 @@ public class JsonWriter {
 		return writer.toString();
 	}
 
+	/**
+	 * Writes an inverted index whose postings are keyed by document ID as a pretty
+	 * JSON object. Document IDs are converted back to locations as each word is
+	 * written, and the locations of each word are written in sorted order.
+	 * 
+	 * @param elements  the index object to write
+	 * @param locations function that returns the location of a document ID
+	 * @param writer    the writer object to write with
+	 * @param indent    the number of spaces to use for indentation
+	 * @throws IOException when theres errors writing to an output file
+	 */
+	public static void writeInverted(
+			Map<String, ? extends Map<Integer, ? extends Collection<? extends Number>>> elements,
+			IntFunction<String> locations, Writer writer, int indent) throws IOException {
+		writer.write("{");
+		var iterator = elements.entrySet().iterator();
+		if (iterator.hasNext()) {
+			var entry = iterator.next();
+			writer.write("\n");
+			writeIndent(writer, indent + 1);
+			writer.write("\"" + entry.getKey() + "\": ");
+			writeObjectArrays(byLocation(entry.getValue(), locations), writer, indent + 1);
+		}
+		while (iterator.hasNext()) {
+			writer.write(",\n");
+			var entry = iterator.next();
+			writeIndent(writer, indent + 1);
+			writer.write("\"" + entry.getKey() + "\": ");
+			writeObjectArrays(byLocation(entry.getValue(), locations), writer, indent + 1);
+		}
+		writeIndent(writer, indent);
+		writer.write("\n}");
+	}
+
+	/**
+	 * Writes an inverted index whose postings are keyed by document ID as a pretty
+	 * JSON object to file.
+	 * 
+	 * @param map       invertedindex we want to print to json format
+	 * @param locations function that returns the location of a document ID
+	 * @param path      path we wish to print to
+	 * @throws IOException when an ioexception occurs
+	 * 
+	 * @see #writeInverted(Map, IntFunction, Writer, int)
+	 */
+	public static void writeInverted(Map<String, ? extends Map<Integer, ? extends Collection<? extends Number>>> map,
+			IntFunction<String> locations, Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writeInverted(map, locations, writer, 0);
+		}
+	}
+
+	/**
+	 * Re-keys the postings of a single word by location.
+	 * 
+	 * @param postings  the postings keyed by document ID
+	 * @param locations function that returns the location of a document ID
+	 * @return the postings keyed by location, in sorted order
+	 */
+	private static Map<String, Collection<? extends Number>> byLocation(
+			Map<Integer, ? extends Collection<? extends Number>> postings, IntFunction<String> locations) {
+		TreeMap<String, Collection<? extends Number>> sorted = new TreeMap<>();
+		for (var entry : postings.entrySet()) {
+			sorted.put(locations.apply(entry.getKey()), entry.getValue());
+		}
+		return sorted;
+	}
+
 	/**
 	 * Method to convert a singular searchresult to a pretty JSON string format
 	 * 
@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import java.net.MalformedURLException;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -17,41 +16,60 @@ import java.util.regex.Pattern;
  * @version Spring 2023
  */
 public class LinkFinder {
+	/** Matches the HREF attribute of an anchor tag. */
+	private static final Pattern ANCHOR = Pattern.compile("<a\\s+(?:[^>]*?\\s+)?href\\s*=\\s*([\"'])([^\\s\"'>]+)\\1",
+			Pattern.CASE_INSENSITIVE);
+
+	/** Canonicalizes links keeping their query. */
+	private static final UrlCanonicalizer KEEP_QUERY = new UrlCanonicalizer(UrlCanonicalizer.QueryPolicy.KEEP);
+
 	/**
 	 * Returns a list of all the valid HTTP(S) URLs found in the HREF attribute of
 	 * the anchor tags in the provided HTML. The URLs will be converted to absolute
 	 * using the base URL and normalized (removing fragments and encoding special
 	 * characters as necessary).
 	 *
-	 * Any URLs that are unable to be properly parsed (throwing an
-	 * {@link MalformedURLException}) or that do not have the HTTP/S protocol will
-	 * not be included.
+	 * Any URLs that are unable to be properly parsed or that do not have the
+	 * HTTP/S protocol will not be included.
 	 *
 	 * @param base the base URL used to convert relative URLs to absolute3
 	 * @param html the raw HTML associated with the base URL
 	 * @param urls the data structure to store found HTTP(S) URLs
 	 *
-	 * @see Pattern#compile(String)
-	 * @see Matcher#find()
-	 * @see Matcher#group(int)
+	 * @see #findLinks(String, CharSequence, UrlCanonicalizer, Collection)
 	 * @see #normalize(URL)
-	 * @see #isHttp(URL)
 	 */
-	public static void findUrls(URL base, String html, Collection<URL> urls) {
-		Pattern pattern = Pattern.compile("<a\\s+(?:[^>]*?\\s+)?href\\s*=\\s*([\"'])([^\\s\"'>]+)\\1",
-				Pattern.CASE_INSENSITIVE);
-		Matcher matcher = pattern.matcher(html);
-		while (matcher.find()) {
-			String href = matcher.group(2);
+	public static void findUrls(URL base, CharSequence html, Collection<URL> urls) {
+		ArrayList<String> links = new ArrayList<>();
+		findLinks(base.toString(), html, KEEP_QUERY, links);
+		for (String link : links) {
 			try {
-				URL url = new URL(base, href);
-				if (!isHttp(url)) {
-					continue;
-				}
-				url = normalize(url);
-				urls.add(url);
-			} catch (MalformedURLException | URISyntaxException e) {
+				urls.add(new URL(link));
+			} catch (MalformedURLException e) {
+				// canonical links are always valid urls
+			}
+		}
+	}
 
+	/**
+	 * Finds the HTTP(S) links in the HREF attribute of the anchor tags in the
+	 * provided HTML like {@link #findUrls(URL, CharSequence, Collection)}, as
+	 * canonical strings instead of {@link URL} objects.
+	 *
+	 * @param base          the url of the page, used to make links absolute
+	 * @param html          the raw HTML associated with the base url
+	 * @param canonicalizer the canonicalizer of the links
+	 * @param links         the data structure to store found links
+	 *
+	 * @see UrlCanonicalizer#canonicalize(String, CharSequence)
+	 */
+	public static void findLinks(String base, CharSequence html, UrlCanonicalizer canonicalizer,
+			Collection<String> links) {
+		Matcher matcher = ANCHOR.matcher(html);
+		while (matcher.find()) {
+			String link = canonicalizer.canonicalize(base, html.subSequence(matcher.start(2), matcher.end(2)));
+			if (link != null) {
+				links.add(link);
 			}
 		}
 	}
@@ -64,7 +82,7 @@ public class LinkFinder {
 	 * @param html the raw HTML associated with the base URL
 	 * @return list of all valid HTTP(S) URLs in the order they were found
 	 *
-	 * @see #findUrls(URL, String, Collection)
+	 * @see #findUrls(URL, CharSequence, Collection)
 	 */
 	public static ArrayList<URL> listUrls(URL base, String html) {
 		ArrayList<URL> urls = new ArrayList<URL>();
@@ -80,7 +98,7 @@ public class LinkFinder {
 	 * @param html the raw HTML associated with the base URL
 	 * @return list of all valid HTTP(S) URLs in the order they were found
 	 *
-	 * @see #findUrls(URL, String, Collection)
+	 * @see #findUrls(URL, CharSequence, Collection)
 	 */
 	public static HashSet<URL> uniqueUrls(URL base, String html) {
 		HashSet<URL> urls = new HashSet<URL>();
@@ -90,16 +108,21 @@ public class LinkFinder {
 
 	/**
 	 * Removes the fragment component of a URL (if present), and properly encodes
-	 * the query string (if necessary).
+	 * the path and query string (if necessary), keeping the query.
 	 *
 	 * @param url the URL to normalize
 	 * @return normalized URL
-	 * @throws URISyntaxException    if unable to craft new URI
-	 * @throws MalformedURLException if unable to craft new URL
+	 * @throws MalformedURLException if the URL is not a valid HTTP(S) URL
+	 * @throws URISyntaxException if the URL cannot be parsed as a URI
+	 *
+	 * @see UrlCanonicalizer
 	 */
 	public static URL normalize(URL url) throws MalformedURLException, URISyntaxException {
-		return new URI(url.getProtocol(), url.getUserInfo(), url.getHost(), url.getPort(), url.getPath(),
-				url.getQuery(), null).toURL();
+		String link = KEEP_QUERY.canonicalize(url.toString());
+		if (link == null) {
+			throw new MalformedURLException("Not a valid HTTP(S) URL: " + url);
+		}
+		return new URL(link);
 	}
 
 	/**
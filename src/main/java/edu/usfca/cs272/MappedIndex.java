@@ -0,0 +1,501 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Read-only index that serves queries straight from a memory-mapped index file
+ * written by {@link InvertedIndex#writeBinary(Path)}. Opening a file only reads
+ * the document table and the words, which are kept in a {@link TermDictionary};
+ * postings are read from the mapping when a query needs them, so a large index
+ * loads quickly, and the operating system shares the mapped pages between every
+ * process that opens the same file. An index that is only read once, such as
+ * one being copied into another index, can instead be read into the heap with
+ * {@link #read(Path)}, so no mapping is left behind once it is dropped.
+ *
+ * Because the index never changes, it is safe to read from multiple threads
+ * without locking. Every method that would change the index throws an
+ * {@link UnsupportedOperationException}.
+ *
+ * <p>
+ * The file format uses big-endian ints throughout:
+ *
+ * <pre>
+ * magic, version
+ * number of documents
+ *   per document: location length, UTF-8 location, word count
+ * number of words, in sorted order
+ *   per word: word length, UTF-8 word, offset of its postings
+ * per word, at its postings offset:
+ *   number of documents containing the word
+ *   per document, in ID order: document ID, position list
+ * </pre>
+ *
+ * Position lists are stored in the form written by
+ * {@link PositionList#write(java.io.DataOutput)}.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class MappedIndex extends InvertedIndex {
+	/** Marks the start of an index file ("SEIX"). */
+	public static final int MAGIC = 0x53454958;
+
+	/** Version of the file format. */
+	public static final int VERSION = 1;
+
+	/** Offset of the size of the position bytes within a stored position list. */
+	private static final int POSITION_BYTES = Integer.BYTES * 2;
+
+	/** Length of a stored position list without its position bytes. */
+	private static final int POSITION_HEADER = Integer.BYTES * 3;
+
+	/** The file this index was opened from. */
+	private final Path source;
+
+	/** The mapped file. Only absolute reads are used, so it is safe to share. */
+	private final ByteBuffer buffer;
+
+	/** Offset of each word in the word table, indexed by term ID. */
+	private final int[] words;
+
+	/** The words of the index, read once when the file is opened. */
+	private final TermDictionary terms;
+
+	/**
+	 * Initializes an index over a mapped file.
+	 *
+	 * @param source    the file that was mapped
+	 * @param buffer    the mapped file
+	 * @param documents the document table read from the file
+	 * @param counts    the word counts read from the file
+	 * @param words     the offset of each word in the word table
+	 * @param terms     the words read from the word table
+	 */
+	private MappedIndex(Path source, ByteBuffer buffer, DocumentTable documents, int[] counts, int[] words,
+			TermDictionary terms) {
+		super(documents, counts);
+		this.source = source;
+		this.buffer = buffer;
+		this.words = words;
+		this.terms = terms;
+	}
+
+	/**
+	 * Maps an index file written by {@link InvertedIndex#writeBinary(Path)}.
+	 *
+	 * @param path the index file to open
+	 * @return a read-only index backed by the file
+	 * @throws IOException if unable to map the file or the file is not an index
+	 */
+	public static MappedIndex open(Path path) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Index file is too large to map: " + path);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return of(path, buffer);
+	}
+
+	/**
+	 * Reads an index file written by {@link InvertedIndex#writeBinary(Path)} into
+	 * the heap instead of mapping it, so the file is not held open or mapped after
+	 * this returns.
+	 *
+	 * @param path the index file to read
+	 * @return a read-only index backed by a copy of the file
+	 * @throws IOException if unable to read the file or the file is not an index
+	 */
+	public static MappedIndex read(Path path) throws IOException {
+		return of(path, ByteBuffer.wrap(Files.readAllBytes(path)));
+	}
+
+	/**
+	 * Reads the document table and the words of an index file.
+	 *
+	 * @param path   the index file
+	 * @param buffer the contents of the file
+	 * @return a read-only index backed by the buffer
+	 * @throws IOException if the file is not an index
+	 */
+	private static MappedIndex of(Path path, ByteBuffer buffer) throws IOException {
+		try {
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+				throw new IOException("Not a version " + VERSION + " index file: " + path);
+			}
+			int offset = Integer.BYTES * 2;
+			int numDocuments = buffer.getInt(offset);
+			offset += Integer.BYTES;
+			DocumentTable documents = new DocumentTable();
+			int[] counts = new int[numDocuments];
+			for (int document = 0; document < numDocuments; document++) {
+				int length = buffer.getInt(offset);
+				documents.add(decode(buffer, offset + Integer.BYTES, length));
+				offset += Integer.BYTES + length;
+				counts[document] = buffer.getInt(offset);
+				offset += Integer.BYTES;
+			}
+			int[] words = new int[buffer.getInt(offset)];
+			offset += Integer.BYTES;
+			ArrayList<String> sorted = new ArrayList<>(words.length);
+			for (int i = 0; i < words.length; i++) {
+				words[i] = offset;
+				int length = buffer.getInt(offset);
+				sorted.add(decode(buffer, offset + Integer.BYTES, length));
+				offset += Integer.BYTES * 2 + length;
+			}
+			return new MappedIndex(path, buffer, documents, counts, words, new TermDictionary(sorted));
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Truncated index file: " + path, e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt word table in index file: " + path, e);
+		}
+	}
+
+	/**
+	 * Decodes a UTF-8 string from the buffer.
+	 *
+	 * @param buffer the buffer to read
+	 * @param offset the offset of the first byte
+	 * @param length the number of bytes to decode
+	 * @return the decoded string
+	 */
+	private static String decode(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the offset of the postings of the word with the given rank.
+	 *
+	 * @param rank the position of the word in sorted order
+	 * @return the offset of its postings
+	 */
+	private int postings(int rank) {
+		return buffer.getInt(words[rank] + Integer.BYTES + buffer.getInt(words[rank]));
+	}
+
+	/**
+	 * Binary searches the word table.
+	 *
+	 * @param word the word to find
+	 * @return the rank of the word, or {@code -(insertion point) - 1} if it is not
+	 *         in the index
+	 */
+	private int find(String word) {
+		return terms.binarySearch(word);
+	}
+
+	/**
+	 * Finds the stored position list of a document within the postings of a word.
+	 *
+	 * @param postings the offset of the postings of the word
+	 * @param document the ID of the document
+	 * @return the offset of the position list, or -1 if the word is not in the
+	 *         document
+	 */
+	private int findPositions(int postings, int document) {
+		int numDocuments = buffer.getInt(postings);
+		int offset = postings + Integer.BYTES;
+		for (int i = 0; i < numDocuments; i++) {
+			int current = buffer.getInt(offset);
+			if (current == document) {
+				return offset + Integer.BYTES;
+			}
+			if (current > document) {
+				break;
+			}
+			offset += Integer.BYTES + POSITION_HEADER + buffer.getInt(offset + Integer.BYTES + POSITION_BYTES);
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the stored position list of a word in a document.
+	 *
+	 * @param word     the word to find
+	 * @param filePath the location of the document
+	 * @return the offset of the position list, or -1 if not found
+	 */
+	private int findPositions(String word, String filePath) {
+		int rank = find(word);
+		int document = getDocuments().indexOf(filePath);
+		if (rank < 0 || document < 0) {
+			return -1;
+		}
+		return findPositions(postings(rank), document);
+	}
+
+	/**
+	 * Reads the postings of a word into a map.
+	 *
+	 * @param rank the position of the word in sorted order
+	 * @return map of document IDs to positions
+	 */
+	private TreeMap<Integer, PositionList> readLocations(int rank) {
+		TreeMap<Integer, PositionList> locations = new TreeMap<>();
+		int postings = postings(rank);
+		int numDocuments = buffer.getInt(postings);
+		int offset = postings + Integer.BYTES;
+		for (int i = 0; i < numDocuments; i++) {
+			PositionList positions = PositionList.read(buffer, offset + Integer.BYTES);
+			locations.put(buffer.getInt(offset), positions);
+			offset += Integer.BYTES + positions.binaryLength();
+		}
+		return locations;
+	}
+
+	@Override
+	protected void visitMatches(Set<String> queries, boolean partial, MatchVisitor visitor) {
+		for (String query : queries) {
+			if (!partial) {
+				int rank = find(query);
+				if (rank >= 0) {
+					visitPostings(postings(rank), visitor);
+				}
+				continue;
+			}
+			int[] range = terms.prefixRange(query);
+			for (int rank = range[0]; rank < range[1]; rank++) {
+				visitPostings(postings(rank), visitor);
+			}
+		}
+	}
+
+	/**
+	 * Visits the documents and counts of a single word without reading its
+	 * positions.
+	 *
+	 * @param postings the offset of the postings of the word
+	 * @param visitor  receives each document and count
+	 */
+	private void visitPostings(int postings, MatchVisitor visitor) {
+		int numDocuments = buffer.getInt(postings);
+		int offset = postings + Integer.BYTES;
+		for (int i = 0; i < numDocuments; i++) {
+			visitor.visit(buffer.getInt(offset), buffer.getInt(offset + Integer.BYTES));
+			offset += Integer.BYTES + POSITION_HEADER + buffer.getInt(offset + Integer.BYTES + POSITION_BYTES);
+		}
+	}
+
+	@Override
+	public void addData(String word, String path, Integer value) {
+		throw new UnsupportedOperationException("Mapped indexes are read-only.");
+	}
+
+	@Override
+	public void addData(List<String> words, String path) {
+		throw new UnsupportedOperationException("Mapped indexes are read-only.");
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		throw new UnsupportedOperationException("Mapped indexes are read-only.");
+	}
+
+	@Override
+	protected void merge(InvertedIndex other, boolean copyOnWrite) {
+		throw new UnsupportedOperationException("Mapped indexes are read-only.");
+	}
+
+	@Override
+	public void addAll(DocumentAccumulator document) {
+		throw new UnsupportedOperationException("Mapped indexes are read-only.");
+	}
+
+	@Override
+	protected void merge(DocumentAccumulator document, boolean copyOnWrite) {
+		throw new UnsupportedOperationException("Mapped indexes are read-only.");
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return find(word) >= 0;
+	}
+
+	@Override
+	public boolean hasPath(String word, String filePath) {
+		return findPositions(word, filePath) >= 0;
+	}
+
+	@Override
+	public boolean hasPosition(String word, String filePath, int position) {
+		return getPositions(word, filePath).contains(position);
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		int rank = find(word);
+		if (rank < 0) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> paths = new TreeSet<>();
+		visitPostings(postings(rank), (document, count) -> paths.add(getDocuments().location(document)));
+		return Collections.unmodifiableSet(paths);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String filePath) {
+		int offset = findPositions(word, filePath);
+		if (offset < 0) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(PositionList.read(buffer, offset));
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return terms.iterator();
+			}
+
+			@Override
+			public boolean contains(Object object) {
+				return terms.contains(object);
+			}
+
+			@Override
+			public int size() {
+				return terms.size();
+			}
+		};
+	}
+
+	@Override
+	public TermDictionary getTerms() {
+		return terms;
+	}
+
+	@Override
+	public int numWords() {
+		return words.length;
+	}
+
+	@Override
+	public int numPaths(String word) {
+		int rank = find(word);
+		return rank < 0 ? 0 : buffer.getInt(postings(rank));
+	}
+
+	@Override
+	public int numPositions(String word, String filePath) {
+		int offset = findPositions(word, filePath);
+		return offset < 0 ? 0 : buffer.getInt(offset);
+	}
+
+	@Override
+	public int size() {
+		return words.length;
+	}
+
+	/**
+	 * Returns a view of the index that reads the postings of each word as it is
+	 * iterated.
+	 *
+	 * @return map of words to document IDs to positions
+	 */
+	private Map<String, TreeMap<Integer, PositionList>> view() {
+		return new AbstractMap<String, TreeMap<Integer, PositionList>>() {
+			@Override
+			public Set<Entry<String, TreeMap<Integer, PositionList>>> entrySet() {
+				return new AbstractSet<Entry<String, TreeMap<Integer, PositionList>>>() {
+					@Override
+					public Iterator<Entry<String, TreeMap<Integer, PositionList>>> iterator() {
+						return new Iterator<Entry<String, TreeMap<Integer, PositionList>>>() {
+							/** Words in the same order as their postings. */
+							private final Iterator<String> iterator = terms.iterator();
+
+							/** Rank of the next word. */
+							private int rank = 0;
+
+							@Override
+							public boolean hasNext() {
+								return rank < words.length;
+							}
+
+							@Override
+							public Entry<String, TreeMap<Integer, PositionList>> next() {
+								if (rank >= words.length) {
+									throw new NoSuchElementException();
+								}
+								var entry = Map.entry(iterator.next(), readLocations(rank));
+								rank++;
+								return entry;
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return words.length;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Reads every posting from the mapping, so a mapped index can be merged into
+	 * an index that can change, such as when a crawl resumes from a checkpoint.
+	 */
+	@Override
+	protected Map<String, TreeMap<Integer, PositionList>> postings() {
+		return view();
+	}
+
+	/**
+	 * Returns this index, which never changes.
+	 */
+	@Override
+	public InvertedIndex copy() {
+		return this;
+	}
+
+	@Override
+	public void writeIndex(Path filePath) throws IOException {
+		JsonWriter.writeInverted(view(), getDocuments()::location, filePath);
+	}
+
+	@Override
+	public void writeBinary(Path filePath) throws IOException {
+		if (!Files.exists(filePath) || !Files.isSameFile(source, filePath)) {
+			Files.copy(source, filePath, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Override
+	public String toString() {
+		TreeMap<String, Map<String, PositionList>> readable = new TreeMap<>();
+		for (var entry : view().entrySet()) {
+			TreeMap<String, PositionList> locations = new TreeMap<>();
+			for (var location : entry.getValue().entrySet()) {
+				locations.put(getDocuments().location(location.getKey()), location.getValue());
+			}
+			readable.put(entry.getKey(), locations);
+		}
+		return readable.toString();
+	}
+}
@@ -0,0 +1,213 @@
+package edu.usfca.cs272;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * One stage of a pipeline: a bounded queue of items handed off by the stage
+ * before it, and a fixed number of threads of its own that handle them. Handing
+ * off an item waits while the queue is full, so a stage that falls behind slows
+ * down the stages feeding it instead of letting items pile up in memory.
+ *
+ * The threads are daemon threads, so a pipeline that is never shut down does
+ * not keep the program running.
+ *
+ * @param <T> the type of item handled
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PipelineStage<T> {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Initalize name of the stage, used to name its threads
+	 */
+	private final String name;
+
+	/**
+	 * Initalize items handed off but not taken by a thread yet
+	 */
+	private final BlockingQueue<T> items;
+
+	/**
+	 * Initalize most items the queue holds
+	 */
+	private final int capacity;
+
+	/**
+	 * Initalize handler run by the threads for every item
+	 */
+	private final Consumer<T> handler;
+
+	/**
+	 * Initalize threads of the stage
+	 */
+	private final Thread[] workers;
+
+	/**
+	 * Initalize number of items being handled
+	 */
+	private final AtomicInteger active;
+
+	/**
+	 * Initalize number of items handled
+	 */
+	private final LongAdder handled;
+
+	/**
+	 * Used to signal the threads should terminate
+	 */
+	private volatile boolean shutdown;
+
+	/**
+	 * Starts a stage.
+	 *
+	 * @param name     the name of the stage
+	 * @param threads  the number of threads handling items
+	 * @param capacity the most items waiting to be handled
+	 * @param handler  the handler of every item, which should not throw
+	 */
+	public PipelineStage(String name, int threads, int capacity, Consumer<T> handler) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Stage threads must be positive: " + threads);
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Stage capacity must be positive: " + capacity);
+		}
+		this.name = name;
+		this.items = new ArrayBlockingQueue<>(capacity);
+		this.capacity = capacity;
+		this.handler = handler;
+		this.active = new AtomicInteger();
+		this.handled = new LongAdder();
+		this.shutdown = false;
+		this.workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Hands off an item to the stage, waiting while the queue is full.
+	 *
+	 * @param item the item to handle
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(T item) throws InterruptedException {
+		if (shutdown) {
+			throw new IllegalStateException("Stage is shut down: " + name);
+		}
+		items.put(item);
+	}
+
+	/**
+	 * @return the name of the stage
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of items waiting to be handled
+	 */
+	public int depth() {
+		return items.size();
+	}
+
+	/**
+	 * @return the most items waiting to be handled
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of items being handled
+	 */
+	public int active() {
+		return active.get();
+	}
+
+	/**
+	 * @return the number of threads handling items
+	 */
+	public int threads() {
+		return workers.length;
+	}
+
+	/**
+	 * @return the number of items handled so far
+	 */
+	public long handled() {
+		return handled.sum();
+	}
+
+	/**
+	 * Stops the threads once they finish the item they are handling. Items still
+	 * waiting are not handled.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name + "[depth=" + depth() + "/" + capacity + ", active=" + active() + "/" + workers.length + ", handled="
+				+ handled() + "]";
+	}
+
+	/**
+	 * Takes items from the queue and handles them until the stage shuts down.
+	 */
+	private class Worker extends Thread {
+		/**
+		 * Initializes a thread with the name of the stage.
+		 *
+		 * @param number the number of the thread within the stage
+		 */
+		private Worker(int number) {
+			setName(name + "-" + number);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (!shutdown) {
+				T item;
+				try {
+					item = items.take();
+				} catch (InterruptedException e) {
+					if (!shutdown) {
+						System.err.printf("Warning: %s interrupted while waiting.%n", getName());
+						log.catching(Level.WARN, e);
+					}
+					break;
+				}
+				active.incrementAndGet();
+				try {
+					handler.accept(item);
+				} catch (RuntimeException e) {
+					System.err.printf("Error: %s encountered an exception while running.%n", getName());
+					log.catching(Level.ERROR, e);
+				} finally {
+					active.decrementAndGet();
+					handled.increment();
+				}
+			}
+		}
+	}
+}
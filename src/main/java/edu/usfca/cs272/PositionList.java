@@ -0,0 +1,363 @@
+package edu.usfca.cs272;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compact, sorted set of word positions for a single word in a single
+ * document. Positions are stored as the gaps between consecutive positions,
+ * each encoded as a variable-length integer (7 bits per byte, high bit set on
+ * every byte except the last). Most gaps fit in a single byte.
+ *
+ * Positions are expected to be added in increasing order, which is how the
+ * builders and crawler produce them. Adding a smaller position still works, but
+ * requires re-encoding the whole list. The number of positions is cached, so
+ * {@link #size()} never decodes anything.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PositionList extends AbstractSet<Integer> {
+	/** Capacity of the byte array when the first position is added. */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/** Shared empty byte array. */
+	private static final byte[] EMPTY = new byte[0];
+
+	/** Encoded gaps between positions. */
+	private byte[] bytes;
+
+	/** Number of bytes used in the array. */
+	private int length;
+
+	/** Number of positions in the list. */
+	private int size;
+
+	/** Largest position in the list. */
+	private int last;
+
+	/**
+	 * Initializes an empty position list.
+	 */
+	public PositionList() {
+		bytes = EMPTY;
+		length = 0;
+		size = 0;
+		last = 0;
+	}
+
+	/**
+	 * Initializes a position list from already-encoded gaps.
+	 *
+	 * @param bytes  the encoded gaps
+	 * @param length the number of bytes used
+	 * @param size   the number of positions encoded
+	 * @param last   the largest position encoded
+	 */
+	private PositionList(byte[] bytes, int length, int size, int last) {
+		this.bytes = bytes;
+		this.length = length;
+		this.size = size;
+		this.last = last;
+	}
+
+	/**
+	 * Initializes a position list with the sorted, distinct positions provided.
+	 *
+	 * @param positions the positions in increasing order
+	 * @param count     the number of positions to use from the array
+	 * @return the encoded position list
+	 */
+	public static PositionList of(int[] positions, int count) {
+		int length = 0;
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			length += varintLength(positions[i] - previous);
+			previous = positions[i];
+		}
+		PositionList list = new PositionList();
+		list.bytes = new byte[length];
+		for (int i = 0; i < count; i++) {
+			list.add(positions[i]);
+		}
+		return list;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds a position to the list. Appending a position larger than every other
+	 * position only writes its gap to the end of the list.
+	 *
+	 * @param position the position to add
+	 * @return true if the position was not already in the list
+	 */
+	public boolean add(int position) {
+		if (size > 0 && position <= last) {
+			return position == last ? false : insert(position);
+		}
+		append(position - last);
+		last = position;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Adds every position of another list to this list. If every position of the
+	 * other list is larger than the positions in this list, the encoded gaps are
+	 * copied over directly.
+	 *
+	 * @param other the positions to add
+	 * @return true if this list changed
+	 */
+	public boolean addAll(PositionList other) {
+		if (other.size == 0) {
+			return false;
+		}
+		int first = other.first();
+		if (size > 0 && first <= last) {
+			boolean changed = false;
+			for (PrimitiveIterator.OfInt iterator = other.iterator(); iterator.hasNext();) {
+				changed |= add(iterator.nextInt());
+			}
+			return changed;
+		}
+		int skip = varintLength(first);
+		append(first - last);
+		ensureCapacity(length + other.length - skip);
+		System.arraycopy(other.bytes, skip, bytes, length, other.length - skip);
+		length += other.length - skip;
+		size += other.size;
+		last = other.last;
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		if (!(object instanceof Integer) || size == 0) {
+			return false;
+		}
+		int position = (Integer) object;
+		if (position > last) {
+			return false;
+		}
+		for (PrimitiveIterator.OfInt iterator = iterator(); iterator.hasNext();) {
+			int current = iterator.nextInt();
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the smallest position in the list.
+	 *
+	 * @return the first position
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public int first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return iterator().nextInt();
+	}
+
+	/**
+	 * Returns the largest position in the list.
+	 *
+	 * @return the last position
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public int last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return last;
+	}
+
+	/**
+	 * Shrinks the encoded gaps to the number of bytes used. Called once a list is
+	 * no longer expected to grow.
+	 */
+	public void trimToSize() {
+		if (bytes.length > length) {
+			bytes = Arrays.copyOf(bytes, length);
+		}
+	}
+
+	/**
+	 * Returns a copy of this list that can be modified without affecting this one.
+	 *
+	 * @return a copy of this list
+	 */
+	public PositionList copy() {
+		return new PositionList(Arrays.copyOf(bytes, length), length, size, last);
+	}
+
+	/**
+	 * Writes this list in its binary form: the number of positions, the last
+	 * position, and the number of encoded bytes as ints, followed by the encoded
+	 * gaps.
+	 *
+	 * @param out the output to write to
+	 * @throws IOException if unable to write
+	 *
+	 * @see #read(ByteBuffer, int)
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(last);
+		out.writeInt(length);
+		out.write(bytes, 0, length);
+	}
+
+	/**
+	 * Returns the number of bytes {@link #write(DataOutput)} writes for this list.
+	 *
+	 * @return the length of the binary form of this list
+	 */
+	public int binaryLength() {
+		return Integer.BYTES * 3 + length;
+	}
+
+	/**
+	 * Reads a list in the binary form written by {@link #write(DataOutput)}. Only
+	 * absolute reads are used, so the buffer may be shared between threads.
+	 *
+	 * @param buffer the buffer to read from
+	 * @param offset the offset of the list in the buffer
+	 * @return the list that was read
+	 */
+	public static PositionList read(ByteBuffer buffer, int offset) {
+		int size = buffer.getInt(offset);
+		int last = buffer.getInt(offset + Integer.BYTES);
+		int length = buffer.getInt(offset + Integer.BYTES * 2);
+		byte[] bytes = new byte[length];
+		buffer.get(offset + Integer.BYTES * 3, bytes);
+		return new PositionList(bytes, length, size, last);
+	}
+
+	/**
+	 * Returns an iterator over the positions in increasing order.
+	 *
+	 * @return an iterator that decodes the positions as it goes
+	 */
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			/** Offset of the next encoded gap. */
+			private int offset = 0;
+
+			/** The previously decoded position. */
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				return offset < length;
+			}
+
+			@Override
+			public int nextInt() {
+				if (offset >= length) {
+					throw new NoSuchElementException();
+				}
+				int gap = 0;
+				int shift = 0;
+				byte current;
+				do {
+					current = bytes[offset++];
+					gap |= (current & 0x7F) << shift;
+					shift += 7;
+				} while (current < 0);
+				position += gap;
+				return position;
+			}
+		};
+	}
+
+	/**
+	 * Writes a gap to the end of the encoded bytes.
+	 *
+	 * @param gap the non-negative gap to write
+	 */
+	private void append(int gap) {
+		ensureCapacity(length + varintLength(gap));
+		while ((gap & ~0x7F) != 0) {
+			bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+			gap >>>= 7;
+		}
+		bytes[length++] = (byte) gap;
+	}
+
+	/**
+	 * Adds a position smaller than the last position by re-encoding the list.
+	 *
+	 * @param position the position to insert
+	 * @return true if the position was not already in the list
+	 */
+	private boolean insert(int position) {
+		int[] positions = new int[size + 1];
+		int count = 0;
+		boolean inserted = false;
+		for (PrimitiveIterator.OfInt iterator = iterator(); iterator.hasNext();) {
+			int current = iterator.nextInt();
+			if (!inserted && position <= current) {
+				if (position == current) {
+					return false;
+				}
+				positions[count++] = position;
+				inserted = true;
+			}
+			positions[count++] = current;
+		}
+		length = 0;
+		size = 0;
+		last = 0;
+		for (int i = 0; i < count; i++) {
+			add(positions[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Grows the byte array if necessary to hold the given number of bytes.
+	 *
+	 * @param capacity the number of bytes needed
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > bytes.length) {
+			int grown = Math.max(INITIAL_CAPACITY, bytes.length + (bytes.length >> 1));
+			bytes = Arrays.copyOf(bytes, Math.max(capacity, grown));
+		}
+	}
+
+	/**
+	 * Returns the number of bytes needed to encode a gap.
+	 *
+	 * @param gap the non-negative gap
+	 * @return the encoded length in bytes
+	 */
+	private static int varintLength(int gap) {
+		int bytes = 1;
+		while ((gap & ~0x7F) != 0) {
+			gap >>>= 7;
+			bytes++;
+		}
+		return bytes;
+	}
+}
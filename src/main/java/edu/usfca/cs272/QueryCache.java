@@ -0,0 +1,340 @@
+package edu.usfca.cs272;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.usfca.cs272.InvertedIndex.SearchResult;
+
+/**
+ * Bounded cache of search results. Each entry is weighted by the number of
+ * results it holds, and once the total weight passes the limit, entries are
+ * evicted by least recent or least frequent use. Every entry was computed from
+ * the newest generation of the index the cache has seen (see
+ * {@link InvertedIndex#getGeneration()}). As soon as a newer generation is
+ * seen, every entry is dropped, so results are never stale.
+ *
+ * All methods are synchronized on the cache, which is only held for map
+ * updates and never during a search.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class QueryCache {
+	/** Maximum total number of cached results unless told otherwise. */
+	public static final int DEFAULT_WEIGHT = 10_000;
+
+	/**
+	 * How entries are chosen for eviction.
+	 */
+	public enum Eviction {
+		/** Evict the least recently used entry. */
+		LRU,
+		/** Evict the least frequently used entry, oldest first among ties. */
+		LFU
+	}
+
+	/**
+	 * Initalize maximum weight
+	 */
+	private final long maxWeight;
+
+	/**
+	 * Initalize eviction policy
+	 */
+	private final Eviction eviction;
+
+	/**
+	 * Initalize entries, in least recently used order
+	 */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/**
+	 * Initalize frequency buckets used for LFU, in insertion order within each
+	 * frequency
+	 */
+	private final TreeMap<Integer, LinkedHashSet<String>> frequencies;
+
+	/**
+	 * Initalize total weight of the cached entries
+	 */
+	private long weight;
+
+	/**
+	 * Initalize newest generation of the index seen, which every entry was
+	 * computed from
+	 */
+	private long latest;
+
+	/**
+	 * Initalize hit counter
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * Initalize miss counter
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Initalize eviction counter, counting entries dropped for space or staleness
+	 */
+	private final LongAdder evictions;
+
+	/**
+	 * A cached result list and its use count
+	 */
+	private static class Entry {
+		/** Initalize results */
+		private final List<SearchResult> results;
+		/** Initalize use count */
+		private int frequency;
+
+		/**
+		 * @param results the search results
+		 */
+		private Entry(List<SearchResult> results) {
+			this.results = results;
+			this.frequency = 1;
+		}
+
+		/**
+		 * @return the weight of the entry
+		 */
+		private int weight() {
+			return Math.max(1, results.size());
+		}
+	}
+
+	/**
+	 * Constructor for an LRU cache of the default weight
+	 */
+	public QueryCache() {
+		this(DEFAULT_WEIGHT, Eviction.LRU);
+	}
+
+	/**
+	 * Constructor for a bounded cache
+	 *
+	 * @param maxWeight the maximum total number of cached results
+	 * @param eviction  how entries are chosen for eviction
+	 */
+	public QueryCache(long maxWeight, Eviction eviction) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("Cache weight must be positive: " + maxWeight);
+		}
+		this.maxWeight = maxWeight;
+		this.eviction = eviction;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.frequencies = new TreeMap<>();
+		this.weight = 0;
+		this.latest = Long.MIN_VALUE;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	/**
+	 * Returns the key of a query in the cache, which tells exact and partial
+	 * searches for the same query apart.
+	 *
+	 * @param query   the normalized query
+	 * @param partial true for a partial search, false for an exact search
+	 * @return the key of the query
+	 */
+	public static String key(String query, boolean partial) {
+		return (partial ? "partial:" : "exact:") + query;
+	}
+
+	/**
+	 * Returns the key of the top results of a query in the cache, which keeps them
+	 * apart from the full results of the same query.
+	 *
+	 * @param query   the normalized query
+	 * @param partial true for a partial search, false for an exact search
+	 * @param limit   the most results kept
+	 * @return the key of the top results of the query
+	 */
+	public static String key(String query, boolean partial, int limit) {
+		return limit + " " + key(query, partial);
+	}
+
+	/**
+	 * Returns the cached results of a query, if they were computed from the given
+	 * index generation. A newer generation drops every entry.
+	 *
+	 * @param query      the key of the query
+	 * @param generation the current generation of the index
+	 * @return the cached results, or null if there are none for this generation
+	 */
+	public synchronized List<SearchResult> get(String query, long generation) {
+		advance(generation);
+		Entry entry = generation == latest ? entries.get(query) : null;
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		if (eviction == Eviction.LFU) {
+			unbucket(query, entry.frequency);
+			entry.frequency++;
+			bucket(query, entry.frequency);
+		}
+		hits.increment();
+		return entry.results;
+	}
+
+	/**
+	 * Caches the results of a query, evicting other entries if the cache is full.
+	 * Results larger than the whole cache, or from an older generation than the
+	 * newest seen, are not stored. A newer generation drops every entry.
+	 *
+	 * @param query      the key of the query
+	 * @param generation the generation of the index the results were computed from
+	 * @param results    the results to cache
+	 */
+	public synchronized void put(String query, long generation, List<SearchResult> results) {
+		advance(generation);
+		Entry entry = new Entry(results);
+		if (generation < latest || entry.weight() > maxWeight) {
+			return;
+		}
+		Entry previous = entries.get(query);
+		if (previous != null) {
+			remove(query, previous);
+		}
+		while (weight + entry.weight() > maxWeight && !entries.isEmpty()) {
+			evict();
+		}
+		entries.put(query, entry);
+		weight += entry.weight();
+		if (eviction == Eviction.LFU) {
+			bucket(query, entry.frequency);
+		}
+	}
+
+	/**
+	 * Drops every entry if the given generation is newer than the newest seen.
+	 *
+	 * @param generation a generation of the index
+	 */
+	private void advance(long generation) {
+		if (generation > latest) {
+			evictions.add(entries.size());
+			clear();
+			latest = generation;
+		}
+	}
+
+	/**
+	 * Evicts a single entry according to the eviction policy.
+	 */
+	private void evict() {
+		String victim;
+		if (eviction == Eviction.LFU) {
+			victim = frequencies.firstEntry().getValue().iterator().next();
+		} else {
+			victim = entries.keySet().iterator().next();
+		}
+		remove(victim, entries.get(victim));
+		evictions.increment();
+	}
+
+	/**
+	 * Removes an entry and its weight.
+	 *
+	 * @param query the query of the entry
+	 * @param entry the entry to remove
+	 */
+	private void remove(String query, Entry entry) {
+		entries.remove(query);
+		weight -= entry.weight();
+		if (eviction == Eviction.LFU) {
+			unbucket(query, entry.frequency);
+		}
+	}
+
+	/**
+	 * Adds a query to the bucket of its use count.
+	 *
+	 * @param query     the query
+	 * @param frequency the number of uses of the query
+	 */
+	private void bucket(String query, int frequency) {
+		frequencies.computeIfAbsent(frequency, f -> new LinkedHashSet<>()).add(query);
+	}
+
+	/**
+	 * Removes a query from the bucket of its use count.
+	 *
+	 * @param query     the query
+	 * @param frequency the number of uses of the query
+	 */
+	private void unbucket(String query, int frequency) {
+		LinkedHashSet<String> bucket = frequencies.get(frequency);
+		bucket.remove(query);
+		if (bucket.isEmpty()) {
+			frequencies.remove(frequency);
+		}
+	}
+
+	/**
+	 * Removes every entry. Counters are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		frequencies.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return the number of cached queries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total number of cached results
+	 */
+	public synchronized long weight() {
+		return weight;
+	}
+
+	/**
+	 * @return the number of lookups that found current results
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that found nothing or stale results
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of entries dropped for space or staleness
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("eviction", eviction);
+		stats.put("size", size());
+		stats.put("weight", weight());
+		stats.put("maxWeight", maxWeight == Long.MAX_VALUE ? "unbounded" : maxWeight);
+		stats.put("hits", hits());
+		stats.put("misses", misses());
+		stats.put("evictions", evictions());
+		return stats.toString();
+	}
+}
@@ -46,6 +46,26 @@ public interface QueryInterface {
 	 */
 	public List<SearchResult> processQuery(String line, boolean partialFlag);
 
+	/**
+	 * Method to process a single query and return only its best results. The
+	 * results are cached like any other, but are not stored for
+	 * {@link #writeResults(Path)}.
+	 * 
+	 * @param line        the query we wish to garner info from
+	 * @param partialFlag true = partial search / false = exact search
+	 * @param limit       the maximum number of results to return
+	 * @return list of up to {@code limit} ranked search results for the query
+	 */
+	public List<SearchResult> processQuery(String line, boolean partialFlag, int limit);
+
+	/**
+	 * Getter to return the cache of stored results, including its hit and miss
+	 * counts
+	 * 
+	 * @return the result cache
+	 */
+	public QueryCache getCache();
+
 	/**
 	 * Getter to return all stored queries
 	 * 
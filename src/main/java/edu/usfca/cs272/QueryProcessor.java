@@ -1,19 +1,15 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
-
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 
 import edu.usfca.cs272.InvertedIndex.SearchResult;
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Processor object used to conduct and generate search data upon a given
@@ -26,17 +22,22 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
 public class QueryProcessor implements QueryInterface {
 
 	/**
-	 * Initalize results
+	 * Initalize results of the queries processed in full, kept for
+	 * {@link #writeResults(Path)} apart from the cache so they are never evicted
+	 */
+	private final TreeMap<String, List<SearchResult>> results;
+	/**
+	 * Initalize cache of search results
 	 */
-	private final Map<String, List<SearchResult>> results;
+	private final QueryCache cache;
 	/**
 	 * Initalize index
 	 */
 	private final InvertedIndex index;
 	/**
-	 * Initalize stemmer
+	 * Initalize provider of stemmers
 	 */
-	private final Stemmer stemmer;
+	private final StemmerProvider stemmers;
 
 	/**
 	 * Constructor for using only an InvertedIndex
@@ -44,9 +45,32 @@ public class QueryProcessor implements QueryInterface {
 	 * @param index I.I we use to construct the QueryProcessor
 	 */
 	public QueryProcessor(InvertedIndex index) {
+		this(index, new QueryCache());
+	}
+
+	/**
+	 * Constructor with a result cache
+	 * 
+	 * @param index I.I we use to construct the QueryProcessor
+	 * @param cache cache to keep results in
+	 */
+	public QueryProcessor(InvertedIndex index, QueryCache cache) {
+		this(index, cache, StemmerProvider.ENGLISH);
+	}
+
+	/**
+	 * Constructor with a result cache and a provider of stemmers
+	 * 
+	 * @param index    I.I we use to construct the QueryProcessor
+	 * @param cache    cache to keep results in
+	 * @param stemmers provider of the stemmer for queries, which must stem the
+	 *                 same way as the index was built
+	 */
+	public QueryProcessor(InvertedIndex index, QueryCache cache, StemmerProvider stemmers) {
 		this.index = index;
-		this.results = new TreeMap<String, List<SearchResult>>();
-		this.stemmer = new SnowballStemmer(ENGLISH);
+		this.results = new TreeMap<>();
+		this.cache = cache;
+		this.stemmers = stemmers;
 	}
 
 	/**
@@ -59,19 +83,51 @@ public class QueryProcessor implements QueryInterface {
 	 */
 	@Override
 	public List<SearchResult> processQuery(String line, boolean partialFlag) {
-		TreeSet<String> uniqueStems = FileStemmer.uniqueStems(line, stemmer);
+		TreeSet<String> uniqueStems = FileStemmer.uniqueStems(line, stemmers.get());
 		if (!uniqueStems.isEmpty()) {
-			String cleanedLine = String.join(" ", uniqueStems);
-			List<SearchResult> queryResults = results.get(cleanedLine);
-			if (queryResults == null) {
-				queryResults = index.indexSearch(uniqueStems, partialFlag);
-				results.put(cleanedLine, queryResults);
-			}
+			String query = String.join(" ", uniqueStems);
+			List<SearchResult> queryResults = search(QueryCache.key(query, partialFlag),
+					() -> index.indexSearch(uniqueStems, partialFlag));
+			results.put(String.join(" ", uniqueStems), queryResults);
 			return Collections.unmodifiableList(queryResults);
 		}
 		return Collections.emptyList();
 	}
 
+	@Override
+	public List<SearchResult> processQuery(String line, boolean partialFlag, int limit) {
+		TreeSet<String> uniqueStems = FileStemmer.uniqueStems(line, stemmers.get());
+		if (!uniqueStems.isEmpty()) {
+			String query = String.join(" ", uniqueStems);
+			return Collections.unmodifiableList(search(QueryCache.key(query, partialFlag, limit),
+					() -> index.search(uniqueStems, partialFlag, limit)));
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns the results of a query from the cache, or searches the index for
+	 * them and caches them
+	 * 
+	 * @param key    the key of the query in the cache
+	 * @param search the search of the index to run on a miss
+	 * @return the results of the query, in ranked order
+	 */
+	private List<SearchResult> search(String key, Supplier<List<SearchResult>> search) {
+		long generation = index.getGeneration();
+		List<SearchResult> queryResults = cache.get(key, generation);
+		if (queryResults == null) {
+			queryResults = search.get();
+			cache.put(key, generation, queryResults);
+		}
+		return queryResults;
+	}
+
+	@Override
+	public QueryCache getCache() {
+		return cache;
+	}
+
 	/**
 	 * Getter to return all stored queries
 	 * 
@@ -25,6 +25,10 @@ public class SearchServlet extends HttpServlet {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * Maximum number of results shown for a search
+	 */
+	private static final int MAX_RESULTS = 50;
 	/*
 	 * initalize processor
 	 */
@@ -95,7 +99,7 @@ public class SearchServlet extends HttpServlet {
 	}
 
 	private String performSearch(String query) {
-		List<SearchResult> searchResults = processor.processQuery(query, true);
+		List<SearchResult> searchResults = processor.processQuery(query, true, MAX_RESULTS);
 		StringBuilder resultsHtml = new StringBuilder();
 		for (SearchResult result : searchResults) {
 			resultsHtml.append("<li data-result-id=\"").append(result.getLocation()).append("\">");
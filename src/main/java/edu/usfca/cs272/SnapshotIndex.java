@@ -0,0 +1,342 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe index that never locks readers. The index data lives in an
+ * immutable generation. Writers build the next generation off to the side,
+ * sharing every posting they do not change with the current generation, and
+ * then publish it with an atomic reference swap. Each read uses whichever
+ * generation is current when it starts, so searches never wait for a merge.
+ *
+ * Building a generation copies the map of words, so writes are not published
+ * one at a time. They are merged into a pending index, which is only published
+ * once it holds at least an eighth as many words as the current generation, or
+ * once the delay has passed since the last publication. Copying then costs a
+ * bounded amount per word written, or one copy per delay, instead of the whole
+ * index per document.
+ * Writes become visible to readers when they are published, or when
+ * {@link #flush()} is called, which the builders and crawler do once they
+ * finish.
+ *
+ * It extends {@link ThreadSafeIndex} so that it can be used wherever a
+ * thread-safe index is expected, such as by the crawler and builders. Every
+ * method is overridden to use the current generation, so the lock and maps it
+ * inherits are never used.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class SnapshotIndex extends ThreadSafeIndex {
+
+	/** Default longest time a write waits to be published, in milliseconds. */
+	public static final long DEFAULT_DELAY = 1000;
+
+	/** Pending words that cause a publication, as a fraction of current words. */
+	private static final int BATCH_RATIO = 8;
+
+	/**
+	 * Initalize current generation
+	 */
+	private final AtomicReference<InvertedIndex> current;
+
+	/**
+	 * Object used exclusively to serialize writers
+	 */
+	private final Object writeLock;
+
+	/**
+	 * Initalize writes not published yet, guarded by the write lock
+	 */
+	private InvertedIndex pending;
+
+	/**
+	 * Initalize time of the last publication, in nanoseconds
+	 */
+	private long published;
+
+	/**
+	 * Initalize longest time a write waits to be published, in nanoseconds
+	 */
+	private final long delay;
+
+	/**
+	 * Default constructor for SnapshotIndex
+	 */
+	public SnapshotIndex() {
+		this(DEFAULT_DELAY);
+	}
+
+	/**
+	 * Constructor with the longest time a write waits to be published
+	 * 
+	 * @param delay the longest time a write waits, in milliseconds
+	 */
+	public SnapshotIndex(long delay) {
+		super();
+		current = new AtomicReference<>(new InvertedIndex());
+		writeLock = new Object();
+		pending = new InvertedIndex(current.get().getDocuments());
+		published = System.nanoTime();
+		this.delay = TimeUnit.MILLISECONDS.toNanos(delay);
+	}
+
+	/**
+	 * Returns the current generation. The generation is never modified, so it may
+	 * be read without any locking for as long as it is needed.
+	 *
+	 * @return the current immutable generation of the index
+	 */
+	public InvertedIndex snapshot() {
+		return current.get();
+	}
+
+	/**
+	 * Copies the current generation. Its postings never change, so they are
+	 * shared with the copy, and only the map of words, the word counts, and the
+	 * document table are copied.
+	 *
+	 * @return a copy of the current generation
+	 */
+	@Override
+	public InvertedIndex copy() {
+		InvertedIndex generation = current.get();
+		return new InvertedIndex(generation, generation.getDocuments().copy());
+	}
+
+	/**
+	 * Publishes the pending writes if there are enough of them, or if the last
+	 * publication was long enough ago. The caller must hold the write lock.
+	 */
+	private void written() {
+		if (pending.size() * BATCH_RATIO >= current.get().size() || System.nanoTime() - published >= delay) {
+			publish();
+		}
+	}
+
+	/**
+	 * Builds the next generation with the pending writes and publishes it. The
+	 * caller must hold the write lock.
+	 */
+	private void publish() {
+		if (pending.getGeneration() == 0) {
+			return;
+		}
+		InvertedIndex next = new InvertedIndex(current.get());
+		next.merge(pending, true);
+		current.set(next);
+		pending = new InvertedIndex(next.getDocuments());
+		published = System.nanoTime();
+	}
+
+	/**
+	 * Publishes every write made so far, so readers see them.
+	 */
+	@Override
+	public void flush() {
+		synchronized (writeLock) {
+			publish();
+		}
+	}
+
+	@Override
+	public void addData(String word, String path, Integer value) {
+		synchronized (writeLock) {
+			pending.addData(word, path, value);
+			written();
+		}
+	}
+
+	@Override
+	public void addData(List<String> words, String path) {
+		synchronized (writeLock) {
+			pending.addData(words, path);
+			written();
+		}
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		synchronized (writeLock) {
+			pending.addAll(other);
+			written();
+		}
+	}
+
+	@Override
+	public void addAll(DocumentAccumulator document) {
+		synchronized (writeLock) {
+			pending.addAll(document);
+			written();
+		}
+	}
+
+	/**
+	 * Merges into the pending writes. The current generation is never changed,
+	 * so there is nothing to copy on write.
+	 */
+	@Override
+	protected void merge(InvertedIndex other, boolean copyOnWrite) {
+		addAll(other);
+	}
+
+	/**
+	 * Merges into the pending writes. The current generation is never changed,
+	 * so there is nothing to copy on write.
+	 */
+	@Override
+	protected void merge(DocumentAccumulator document, boolean copyOnWrite) {
+		addAll(document);
+	}
+
+	@Override
+	public long getGeneration() {
+		return current.get().getGeneration();
+	}
+
+	@Override
+	public DocumentTable getDocuments() {
+		return current.get().getDocuments();
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return current.get().hasWord(word);
+	}
+
+	@Override
+	public boolean hasPath(String word, String filepath) {
+		return current.get().hasPath(word, filepath);
+	}
+
+	@Override
+	public boolean hasPosition(String word, String filepath, int position) {
+		return current.get().hasPosition(word, filepath, position);
+	}
+
+	@Override
+	public boolean hasCount(String filePath) {
+		return current.get().hasCount(filePath);
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		return current.get().getPaths(word);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String filePath) {
+		return current.get().getPositions(word, filePath);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return current.get().getWords();
+	}
+
+	@Override
+	public TermDictionary getTerms() {
+		return current.get().getTerms();
+	}
+
+	@Override
+	public Map<String, Integer> getCounts() {
+		return current.get().getCounts();
+	}
+
+	@Override
+	public int numWords() {
+		return current.get().numWords();
+	}
+
+	@Override
+	public int numPaths(String word) {
+		return current.get().numPaths(word);
+	}
+
+	@Override
+	public int numPositions(String word, String filePath) {
+		return current.get().numPositions(word, filePath);
+	}
+
+	@Override
+	public int numCounts(String word) {
+		return current.get().numCounts(word);
+	}
+
+	@Override
+	public void writeIndex(Path filePath) throws IOException {
+		current.get().writeIndex(filePath);
+	}
+
+	@Override
+	public void writeCounts(Path filePath) throws IOException {
+		current.get().writeCounts(filePath);
+	}
+
+	@Override
+	public void writeBinary(Path filePath) throws IOException {
+		current.get().writeBinary(filePath);
+	}
+
+	@Override
+	public List<SearchResult> indexSearch(Set<String> queries, boolean partial) {
+		return current.get().indexSearch(queries, partial);
+	}
+
+	@Override
+	public List<SearchResult> exactSearch(Set<String> queries) {
+		return current.get().exactSearch(queries);
+	}
+
+	@Override
+	public List<SearchResult> partialSearch(Set<String> queries) {
+		return current.get().partialSearch(queries);
+	}
+
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean partial, int k) {
+		return current.get().search(queries, partial, k);
+	}
+
+	@Override
+	protected void visitMatches(Set<String> queries, boolean partial, MatchVisitor visitor) {
+		current.get().visitMatches(queries, partial, visitor);
+	}
+
+	/**
+	 * Supplies the postings of the current generation, so this index can be
+	 * merged into another one.
+	 */
+	@Override
+	protected Map<String, TreeMap<Integer, PositionList>> postings() {
+		return current.get().postings();
+	}
+
+	/**
+	 * Supplies the word counts of the current generation, so this index can be
+	 * merged into another one.
+	 */
+	@Override
+	protected int[] counts() {
+		return current.get().counts();
+	}
+
+	@Override
+	public String toString() {
+		return current.get().toString();
+	}
+
+	@Override
+	public int size() {
+		return current.get().size();
+	}
+}
@@ -0,0 +1,284 @@
+package edu.usfca.cs272;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Task queue with the same contract as {@link WorkQueue} that gives every worker
+ * its own lock-free deque instead of sharing a single synchronized list. Tasks
+ * submitted by a worker go to the front of its own deque and are run newest
+ * first; tasks submitted from other threads are spread over the workers in turn.
+ * A worker whose deque is empty steals the oldest task from another worker, and
+ * only parks once every deque is empty.
+ *
+ * Pending tasks are counted with a single atomic counter, and the monitor used
+ * by {@link #finish()} is only touched when the count drops to zero.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class StealingWorkQueue implements TaskQueue {
+	/** Workers, each with its own deque of tasks. */
+	private final Worker[] workers;
+
+	/** Workers that may be parked waiting for work. */
+	private final ConcurrentLinkedQueue<Worker> idle;
+
+	/** Worker that receives the next task submitted from outside the queue. */
+	private final AtomicInteger next;
+
+	/** Number of tasks submitted but not yet finished. */
+	private final AtomicLong pending;
+
+	/** Object used exclusively to wait for pending tasks to finish. */
+	private final Object finishLock;
+
+	/** Used to signal the workers should terminate. */
+	private volatile boolean shutdown;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Starts a work queue with the default number of threads.
+	 *
+	 * @see #StealingWorkQueue(int)
+	 */
+	public StealingWorkQueue() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 */
+	public StealingWorkQueue(int threads) {
+		this.workers = new Worker[threads];
+		this.idle = new ConcurrentLinkedQueue<>();
+		this.next = new AtomicInteger();
+		this.pending = new AtomicLong();
+		this.finishLock = new Object();
+		this.shutdown = false;
+
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker();
+		}
+		for (Worker worker : workers) {
+			worker.start();
+		}
+	}
+
+	/**
+	 * Adds a work (or task) request to the queue. A worker thread will process this
+	 * request when available.
+	 *
+	 * @param task work request (in the form of a {@link Runnable} object)
+	 */
+	@Override
+	public void execute(Runnable task) {
+		pending.incrementAndGet();
+		Thread current = Thread.currentThread();
+		if (current instanceof Worker && ((Worker) current).queue() == this) {
+			((Worker) current).tasks.addFirst(task);
+		} else {
+			workers[Math.floorMod(next.getAndIncrement(), workers.length)].tasks.addLast(task);
+		}
+		wakeOne();
+	}
+
+	/**
+	 * Waits for all pending work (or tasks) to be finished. Does not terminate the
+	 * worker threads so that the work queue can continue to be used.
+	 */
+	@Override
+	public void finish() {
+		synchronized (finishLock) {
+			try {
+				while (pending.get() > 0) {
+					finishLock.wait();
+				}
+			} catch (InterruptedException e) {
+				System.err.println("Warning: Work queue interrupted while finishing.");
+				log.catching(Level.WARN, e);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Similar to {@link Thread#join()}, waits for all the work to be finished and
+	 * the worker threads to terminate. The work queue cannot be reused after this
+	 * call completes.
+	 */
+	@Override
+	public void join() {
+		try {
+			finish();
+			shutdown();
+			for (Worker worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			System.err.println("Warning: Work queue interrupted while joining.");
+			log.catching(Level.WARN, e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Asks the queue to shutdown. Any unprocessed work (or tasks) will not be
+	 * finished, but threads in-progress will not be interrupted.
+	 */
+	@Override
+	public void shutdown() {
+		shutdown = true;
+		for (Worker worker : workers) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads being used by the work queue.
+	 *
+	 * @return number of worker threads
+	 */
+	@Override
+	public int size() {
+		return workers.length;
+	}
+
+	/**
+	 * Unparks one parked worker, if there is one.
+	 */
+	private void wakeOne() {
+		if (idle.isEmpty()) {
+			return;
+		}
+		Worker worker;
+		while ((worker = idle.poll()) != null) {
+			if (worker.parked.compareAndSet(true, false)) {
+				LockSupport.unpark(worker);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Marks a task as finished, waking up any thread waiting in
+	 * {@link #finish()} if it was the last one.
+	 */
+	private void finished() {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (finishLock) {
+				finishLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Worker thread that runs tasks from its own deque first, then steals from the
+	 * other workers, and parks when there is no work anywhere.
+	 */
+	private class Worker extends Thread {
+		/** Tasks of this worker. The owner uses the front, thieves the back. */
+		private final ConcurrentLinkedDeque<Runnable> tasks;
+
+		/** Set when the last task taken was stolen from another worker. */
+		private boolean stole;
+
+		/** Set while this worker is, or is about to be, parked. */
+		private final AtomicBoolean parked;
+
+		/**
+		 * Initializes a worker thread with a custom name.
+		 */
+		public Worker() {
+			this.tasks = new ConcurrentLinkedDeque<>();
+			this.stole = false;
+			this.parked = new AtomicBoolean(false);
+			setName("Worker" + getName());
+		}
+
+		/**
+		 * Returns the queue this worker belongs to.
+		 *
+		 * @return the queue of this worker
+		 */
+		private StealingWorkQueue queue() {
+			return StealingWorkQueue.this;
+		}
+
+		/**
+		 * Takes a task from this worker's deque, or steals one from another worker.
+		 *
+		 * @return a task, or null if every deque is empty
+		 */
+		private Runnable take() {
+			stole = false;
+			Runnable task = tasks.pollFirst();
+			if (task != null) {
+				return task;
+			}
+			stole = true;
+			int start = ThreadLocalRandom.current().nextInt(workers.length);
+			for (int i = 0; i < workers.length; i++) {
+				Worker victim = workers[(start + i) % workers.length];
+				if (victim != this) {
+					task = victim.tasks.pollLast();
+					if (task != null) {
+						return task;
+					}
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public void run() {
+			while (!shutdown) {
+				Runnable task = take();
+				if (task == null) {
+					// register as idle before checking one last time, so a task added
+					// after this check always finds this worker to wake up
+					parked.set(true);
+					idle.add(this);
+					task = take();
+					if (task == null) {
+						while (parked.get() && !shutdown) {
+							LockSupport.park(this);
+						}
+						continue;
+					}
+					if (!parked.compareAndSet(true, false)) {
+						// a submitter woke this worker for its task, pass the wake on
+						wakeOne();
+					}
+				}
+				if (stole || !tasks.isEmpty()) {
+					// there is probably more work where this task came from
+					wakeOne();
+				}
+
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					System.err.printf("Error: %s encountered an exception while running.%n", this.getName());
+					log.catching(Level.ERROR, e);
+				} finally {
+					finished();
+				}
+			}
+		}
+	}
+}
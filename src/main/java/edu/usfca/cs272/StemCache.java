@@ -0,0 +1,224 @@
+package edu.usfca.cs272;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the stems of words, shared by every thread that stems with
+ * the same algorithm. Since a few thousand words make up most of any text in a
+ * natural language, most words are found here and never reach a stemmer.
+ *
+ * The cache is set-associative: a word can only be kept in one of a few slots
+ * chosen by its hash, and when they are all taken, a random one of them is
+ * replaced. Entries never change once stored, so lookups and stores need no
+ * locking, and a word can be looked up while it is still in a reused buffer
+ * without turning it into a {@link String} first.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class StemCache {
+	/** Default most words kept. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** Longest word kept, so the size of the cache stays bounded. */
+	public static final int MAX_LENGTH = 32;
+
+	/** Number of slots a word can be kept in. */
+	private static final int WAYS = 4;
+
+	/**
+	 * Initalize slots, in sets of {@link #WAYS} consecutive slots
+	 */
+	private final AtomicReferenceArray<Entry> slots;
+
+	/**
+	 * Initalize mask that turns a hash into the first slot of its set
+	 */
+	private final int mask;
+
+	/**
+	 * Initalize number of lookups that found the word
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * Initalize number of lookups that did not find the word
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Constructor with the default capacity
+	 */
+	public StemCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity the most words to keep, rounded up to a power of two
+	 */
+	public StemCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		int size = Math.max(WAYS, Integer.highestOneBit(capacity));
+		size = size < capacity ? size << 1 : size;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = (size - 1) & -WAYS;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Looks up the stem of a word.
+	 *
+	 * @param word the word
+	 * @return the stem, or null if the word is not in the cache
+	 */
+	public String get(CharSequence word) {
+		if (word.length() <= MAX_LENGTH) {
+			int hash = hash(word);
+			int set = hash & mask;
+			for (int i = 0; i < WAYS; i++) {
+				Entry entry = slots.get(set + i);
+				if (entry != null && entry.hash == hash && entry.word.contentEquals(word)) {
+					hits.increment();
+					return entry.stem;
+				}
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Keeps the stem of a word, replacing another word if its set is full.
+	 *
+	 * @param word the word
+	 * @param stem the stem of the word
+	 */
+	public void put(CharSequence word, String stem) {
+		if (word.length() > MAX_LENGTH) {
+			return;
+		}
+		int hash = hash(word);
+		int set = hash & mask;
+		int slot = -1;
+		for (int i = 0; i < WAYS; i++) {
+			Entry entry = slots.get(set + i);
+			if (entry == null) {
+				slot = set + i;
+				break;
+			}
+			if (entry.hash == hash && entry.word.contentEquals(word)) {
+				return;
+			}
+		}
+		if (slot < 0) {
+			slot = set + ThreadLocalRandom.current().nextInt(WAYS);
+		}
+		slots.set(slot, new Entry(word.toString(), stem, hash));
+	}
+
+	/**
+	 * @return the most words kept
+	 */
+	public int capacity() {
+		return slots.length();
+	}
+
+	/**
+	 * @return the number of words kept
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < slots.length(); i++) {
+			if (slots.get(i) != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of lookups that found the word
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that did not find the word
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the share of lookups that found the word, or 0 before any lookup
+	 */
+	public double hitRate() {
+		long hits = hits();
+		long lookups = hits + misses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("size", size());
+		stats.put("capacity", capacity());
+		stats.put("hits", hits());
+		stats.put("misses", misses());
+		stats.put("hitRate", String.format("%.3f", hitRate()));
+		return stats.toString();
+	}
+
+	/**
+	 * Hashes a word the same way as {@link String#hashCode()}, with the high bits
+	 * spread into the low bits that choose the set.
+	 *
+	 * @param word the word
+	 * @return the hash
+	 */
+	private static int hash(CharSequence word) {
+		int hash = 0;
+		for (int i = 0; i < word.length(); i++) {
+			hash = 31 * hash + word.charAt(i);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * A word and its stem.
+	 */
+	private static class Entry {
+		/** Initalize word */
+		private final String word;
+
+		/** Initalize stem of the word */
+		private final String stem;
+
+		/** Initalize hash of the word */
+		private final int hash;
+
+		/**
+		 * Constructor
+		 *
+		 * @param word the word
+		 * @param stem the stem of the word
+		 * @param hash the hash of the word
+		 */
+		private Entry(String word, String stem, int hash) {
+			this.word = word;
+			this.stem = stem;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package edu.usfca.cs272;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
+
+/**
+ * Provides every thread with a stemmer of its own, created the first time the
+ * thread asks for one and reused from then on, so index builders, crawlers, and
+ * query processors never create a stemmer per file, page, or query. Every
+ * stemmer from a provider shares one {@link StemCache}, and only stems the words
+ * the cache misses.
+ *
+ * Any stemmer can be plugged in through the factory, as long as the stemmers it
+ * creates all stem the same way, since they share their cache. A stemmer from
+ * {@link #get()} must only be used by the thread that got it. Threads that only
+ * live for one task, such as virtual threads, should not ask for one.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class StemmerProvider {
+	/** Provider of English stemmers, used unless another one is given. */
+	public static final StemmerProvider ENGLISH = new StemmerProvider(ALGORITHM.ENGLISH);
+
+	/**
+	 * Initalize factory creating the stemmer of each thread
+	 */
+	private final Supplier<? extends Stemmer> factory;
+
+	/**
+	 * Initalize cache of stems shared by every stemmer
+	 */
+	private final StemCache cache;
+
+	/**
+	 * Initalize stemmer of each thread
+	 */
+	private final ThreadLocal<Stemmer> stemmers;
+
+	/**
+	 * Initalize number of stemmers created
+	 */
+	private final LongAdder created;
+
+	/**
+	 * Constructor for a snowball stemming algorithm
+	 *
+	 * @param algorithm the algorithm
+	 */
+	public StemmerProvider(ALGORITHM algorithm) {
+		this(() -> new SnowballStemmer(algorithm));
+	}
+
+	/**
+	 * Constructor with a cache of the default capacity
+	 *
+	 * @param factory the factory creating the stemmer of each thread
+	 */
+	public StemmerProvider(Supplier<? extends Stemmer> factory) {
+		this(factory, new StemCache());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param factory the factory creating the stemmer of each thread
+	 * @param cache   the cache of stems shared by every stemmer, which must only
+	 *                hold stems from the same algorithm
+	 */
+	public StemmerProvider(Supplier<? extends Stemmer> factory, StemCache cache) {
+		this.factory = factory;
+		this.cache = cache;
+		this.created = new LongAdder();
+		this.stemmers = ThreadLocal.withInitial(() -> {
+			created.increment();
+			return new CachedStemmer(this.factory.get(), this.cache);
+		});
+	}
+
+	/**
+	 * Returns the provider for the snowball stemming algorithm with the given
+	 * name, such as "english" or "porter"
+	 *
+	 * @param name the name of the algorithm, in any case
+	 * @return the provider, which is {@link #ENGLISH} for English
+	 * @throws IllegalArgumentException if there is no algorithm with the name
+	 */
+	public static StemmerProvider forName(String name) {
+		ALGORITHM algorithm = ALGORITHM.valueOf(name.toUpperCase(Locale.ROOT));
+		return algorithm == ALGORITHM.ENGLISH ? ENGLISH : new StemmerProvider(algorithm);
+	}
+
+	/**
+	 * Returns the stemmer of the calling thread, creating it the first time.
+	 *
+	 * @return the stemmer, which must not be shared with other threads
+	 */
+	public Stemmer get() {
+		return stemmers.get();
+	}
+
+	/**
+	 * @return the cache of stems shared by every stemmer
+	 */
+	public StemCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return the number of stemmers created, one per thread that asked
+	 */
+	public long created() {
+		return created.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "StemmerProvider[created=" + created() + ", cache=" + cache + "]";
+	}
+}
@@ -0,0 +1,51 @@
+package edu.usfca.cs272;
+
+/**
+ * Pool of worker threads that run tasks submitted to it. It is up to the user
+ * of a queue to keep track of whether there is any pending work remaining.
+ *
+ * @see WorkQueue
+ * @see StealingWorkQueue
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public interface TaskQueue {
+	/** The default number of worker threads to use when not specified. */
+	public static final int DEFAULT = 5;
+
+	/**
+	 * Adds a work (or task) request to the queue. A worker thread will process this
+	 * request when available.
+	 *
+	 * @param task work request (in the form of a {@link Runnable} object)
+	 */
+	public void execute(Runnable task);
+
+	/**
+	 * Waits for all pending work (or tasks) to be finished. Does not terminate the
+	 * worker threads so that the work queue can continue to be used.
+	 */
+	public void finish();
+
+	/**
+	 * Similar to {@link Thread#join()}, waits for all the work to be finished and
+	 * the worker threads to terminate. The work queue cannot be reused after this
+	 * call completes.
+	 */
+	public void join();
+
+	/**
+	 * Asks the queue to shutdown. Any unprocessed work (or tasks) will not be
+	 * finished, but threads in-progress will not be interrupted.
+	 */
+	public void shutdown();
+
+	/**
+	 * Returns the number of worker threads being used by the work queue.
+	 *
+	 * @return number of worker threads
+	 */
+	public int size();
+}
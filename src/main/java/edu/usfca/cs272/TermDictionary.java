@@ -0,0 +1,422 @@
+package edu.usfca.cs272;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Frozen, sorted list of the words in an index. Each word is identified by its
+ * position in sorted order (its term ID), so every word that starts with a
+ * prefix has an ID in one contiguous range, and whatever is stored per word can
+ * live in a plain array indexed by term ID.
+ *
+ * Words are front-coded in blocks of {@value #BLOCK_SIZE}: the first word of
+ * each block is kept whole and binary searched, and the rest of the block only
+ * stores the length of the prefix shared with the previous word followed by the
+ * remaining characters, all packed into one {@code char} array. Looking up a
+ * word binary searches the block heads and then scans a single block.
+ *
+ * Words are compared with {@link String#compareTo(String)}, the same order as
+ * the index's {@code TreeMap}.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class TermDictionary extends AbstractList<String> implements RandomAccess {
+	/** Number of words in each front-coded block. */
+	public static final int BLOCK_SIZE = 16;
+
+	/** Lengths at least this large are stored in two characters. */
+	private static final int LONG_LENGTH = 0x8000;
+
+	/** Shared empty dictionary. */
+	private static final TermDictionary EMPTY = new TermDictionary(new ArrayList<>());
+
+	/** First word of each block. */
+	private final String[] heads;
+
+	/** Offset in {@link #suffixes} of the second word of each block. */
+	private final int[] offsets;
+
+	/** Front-coded words after the head of each block. */
+	private final char[] suffixes;
+
+	/** Number of words. */
+	private final int size;
+
+	/**
+	 * Initializes a dictionary with the words provided.
+	 *
+	 * @param words the words in increasing order, without duplicates
+	 * @throws IllegalArgumentException if the words are not sorted and distinct
+	 */
+	public TermDictionary(Collection<String> words) {
+		int blocks = (words.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		heads = new String[blocks];
+		offsets = new int[blocks];
+		StringBuilder packed = new StringBuilder();
+		String previous = null;
+		int count = 0;
+		for (String word : words) {
+			if (previous != null && previous.compareTo(word) >= 0) {
+				throw new IllegalArgumentException("Words must be sorted and distinct: " + previous + ", " + word);
+			}
+			if (count % BLOCK_SIZE == 0) {
+				heads[count / BLOCK_SIZE] = word;
+				offsets[count / BLOCK_SIZE] = packed.length();
+			} else {
+				int shared = sharedPrefix(previous, word);
+				appendLength(packed, shared);
+				appendLength(packed, word.length() - shared);
+				packed.append(word, shared, word.length());
+			}
+			previous = word;
+			count++;
+		}
+		size = count;
+		suffixes = new char[packed.length()];
+		packed.getChars(0, packed.length(), suffixes, 0);
+	}
+
+	/**
+	 * Returns a dictionary with no words.
+	 *
+	 * @return an empty dictionary
+	 */
+	public static TermDictionary empty() {
+		return EMPTY;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the word with the given term ID.
+	 *
+	 * @param id the term ID
+	 * @return the word
+	 * @throws IndexOutOfBoundsException if there is no such term ID
+	 */
+	@Override
+	public String get(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("Unknown term ID: " + id);
+		}
+		Cursor cursor = new Cursor(id / BLOCK_SIZE);
+		for (int i = id % BLOCK_SIZE; i > 0; i--) {
+			cursor.next();
+		}
+		return cursor.word();
+	}
+
+	/**
+	 * Searches for a word.
+	 *
+	 * @param word the word to find
+	 * @return the term ID of the word, or {@code -(insertion point) - 1} if the
+	 *         word is not in the dictionary
+	 *
+	 * @see java.util.Arrays#binarySearch(Object[], Object)
+	 */
+	public int binarySearch(String word) {
+		int block = lastBlockAtMost(word);
+		if (block < 0) {
+			return -1;
+		}
+		Cursor cursor = new Cursor(block);
+		int id = block * BLOCK_SIZE;
+		int end = Math.min(id + BLOCK_SIZE, size);
+		while (true) {
+			int compare = cursor.compareTo(word);
+			if (compare == 0) {
+				return id;
+			}
+			if (compare > 0) {
+				return -(id + 1);
+			}
+			if (++id == end) {
+				return -(id + 1);
+			}
+			cursor.next();
+		}
+	}
+
+	@Override
+	public int indexOf(Object object) {
+		if (!(object instanceof String)) {
+			return -1;
+		}
+		int id = binarySearch((String) object);
+		return id < 0 ? -1 : id;
+	}
+
+	@Override
+	public int lastIndexOf(Object object) {
+		return indexOf(object);
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return indexOf(object) >= 0;
+	}
+
+	/**
+	 * Returns the range of term IDs of the words that start with a prefix. Every
+	 * word in the range starts with the prefix and no word outside it does.
+	 *
+	 * @param prefix the prefix to find
+	 * @return the first term ID in the range and the term ID just past it; both
+	 *         are equal if no word starts with the prefix
+	 */
+	public int[] prefixRange(String prefix) {
+		int from = binarySearch(prefix);
+		if (from < 0) {
+			from = -(from + 1);
+		}
+		int low = 0;
+		int high = heads.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (isPast(heads[middle], prefix)) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		int to = Math.min(low * BLOCK_SIZE, size);
+		if (low > 0) {
+			int block = low - 1;
+			Cursor cursor = new Cursor(block);
+			int id = block * BLOCK_SIZE;
+			while (id < to && !cursor.isPast(prefix)) {
+				if (++id < to) {
+					cursor.next();
+				}
+			}
+			to = id;
+		}
+		return new int[] { from, Math.max(from, to) };
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return iterator(0, size);
+	}
+
+	/**
+	 * Returns an iterator over a range of term IDs that decodes each block in
+	 * order.
+	 *
+	 * @param from the first term ID, inclusive
+	 * @param to   the last term ID, exclusive
+	 * @return an iterator over the words in the range
+	 * @throws IndexOutOfBoundsException if the range is out of bounds
+	 */
+	public Iterator<String> iterator(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Invalid term ID range: " + from + " to " + to);
+		}
+		return new Iterator<String>() {
+			/** Term ID of the next word. */
+			private int id = from;
+
+			/** Position in the blocks, or null before the first word. */
+			private Cursor cursor = null;
+
+			@Override
+			public boolean hasNext() {
+				return id < to;
+			}
+
+			@Override
+			public String next() {
+				if (id >= to) {
+					throw new NoSuchElementException();
+				}
+				if (cursor == null) {
+					cursor = new Cursor(id / BLOCK_SIZE);
+					for (int i = id % BLOCK_SIZE; i > 0; i--) {
+						cursor.next();
+					}
+				} else if (id % BLOCK_SIZE == 0) {
+					cursor = new Cursor(id / BLOCK_SIZE);
+				} else {
+					cursor.next();
+				}
+				id++;
+				return cursor.word();
+			}
+		};
+	}
+
+	/**
+	 * Returns the last block whose head is less than or equal to a word.
+	 *
+	 * @param word the word to find
+	 * @return the block, or -1 if the word comes before every word
+	 */
+	private int lastBlockAtMost(String word) {
+		int low = 0;
+		int high = heads.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = heads[middle].compareTo(word);
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Checks if a word sorts after every word that starts with a prefix.
+	 *
+	 * @param word   the word to check
+	 * @param prefix the prefix
+	 * @return true if the word is past the range of the prefix
+	 */
+	private static boolean isPast(String word, String prefix) {
+		return word.compareTo(prefix) > 0 && !word.startsWith(prefix);
+	}
+
+	/**
+	 * Returns the length of the prefix shared by two words.
+	 *
+	 * @param first  the first word
+	 * @param second the second word
+	 * @return the number of leading characters the words share
+	 */
+	private static int sharedPrefix(String first, String second) {
+		int limit = Math.min(first.length(), second.length());
+		int shared = 0;
+		while (shared < limit && first.charAt(shared) == second.charAt(shared)) {
+			shared++;
+		}
+		return shared;
+	}
+
+	/**
+	 * Appends a length as one character, or two if it is too large for one.
+	 *
+	 * @param packed the characters to append to
+	 * @param length the non-negative length
+	 */
+	private static void appendLength(StringBuilder packed, int length) {
+		if (length >= LONG_LENGTH) {
+			packed.append((char) (LONG_LENGTH | (length >>> 15)));
+			packed.append((char) (length & (LONG_LENGTH - 1)));
+		} else {
+			packed.append((char) length);
+		}
+	}
+
+	/**
+	 * Decodes the words of a single block in order.
+	 */
+	private class Cursor {
+		/** Offset of the next encoded word. */
+		private int offset;
+
+		/** The current word. */
+		private char[] word;
+
+		/** Length of the current word. */
+		private int length;
+
+		/**
+		 * Positions the cursor on the head of a block.
+		 *
+		 * @param block the block to decode
+		 */
+		private Cursor(int block) {
+			String head = heads[block];
+			offset = offsets[block];
+			length = head.length();
+			word = new char[Math.max(16, length * 2)];
+			head.getChars(0, length, word, 0);
+		}
+
+		/**
+		 * Moves to the next word of the block.
+		 */
+		private void next() {
+			int shared = readLength();
+			int remaining = readLength();
+			length = shared + remaining;
+			if (length > word.length) {
+				char[] grown = new char[length * 2];
+				System.arraycopy(word, 0, grown, 0, shared);
+				word = grown;
+			}
+			System.arraycopy(suffixes, offset, word, shared, remaining);
+			offset += remaining;
+		}
+
+		/**
+		 * Reads a length written by {@link TermDictionary#appendLength}.
+		 *
+		 * @return the length
+		 */
+		private int readLength() {
+			int value = suffixes[offset++];
+			if (value >= LONG_LENGTH) {
+				value = ((value & (LONG_LENGTH - 1)) << 15) | suffixes[offset++];
+			}
+			return value;
+		}
+
+		/**
+		 * Compares the current word to another word without building a string.
+		 *
+		 * @param other the word to compare to
+		 * @return the same as {@link String#compareTo(String)}
+		 */
+		private int compareTo(String other) {
+			int limit = Math.min(length, other.length());
+			for (int i = 0; i < limit; i++) {
+				if (word[i] != other.charAt(i)) {
+					return word[i] - other.charAt(i);
+				}
+			}
+			return length - other.length();
+		}
+
+		/**
+		 * Checks if the current word sorts after every word that starts with a
+		 * prefix.
+		 *
+		 * @param prefix the prefix
+		 * @return true if the current word is past the range of the prefix
+		 */
+		private boolean isPast(String prefix) {
+			if (length < prefix.length()) {
+				return compareTo(prefix) > 0;
+			}
+			for (int i = 0; i < prefix.length(); i++) {
+				if (word[i] != prefix.charAt(i)) {
+					return word[i] > prefix.charAt(i);
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the current word.
+		 *
+		 * @return the current word
+		 */
+		private String word() {
+			return new String(word, 0, length);
+		}
+	}
+}
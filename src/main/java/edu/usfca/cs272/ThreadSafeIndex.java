@@ -62,6 +62,34 @@ public class ThreadSafeIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public void addAll(DocumentAccumulator document) {
+		lock.writeLock().lock();
+		try {
+			super.addAll(document);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public InvertedIndex copy() {
+		lock.readLock().lock();
+		try {
+			return super.copy();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Makes every write so far visible to readers. Writes to this index are
+	 * visible as soon as they return, so there is nothing to do, but indexes that
+	 * publish writes in batches override this.
+	 */
+	public void flush() {
+	}
+
 	@Override
 	public boolean hasWord(String word) {
 		lock.readLock().lock();
@@ -132,6 +160,16 @@ public class ThreadSafeIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public TermDictionary getTerms() {
+		lock.readLock().lock();
+		try {
+			return super.getTerms();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public Map<String, Integer> getCounts() {
 		lock.readLock().lock();
@@ -202,6 +240,16 @@ public class ThreadSafeIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public void writeBinary(Path filePath) throws IOException {
+		lock.readLock().lock();
+		try {
+			super.writeBinary(filePath);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public List<SearchResult> exactSearch(Set<String> queries) {
 		lock.readLock().lock();
@@ -222,6 +270,16 @@ public class ThreadSafeIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public List<SearchResult> search(Set<String> queries, boolean partial, int k) {
+		lock.readLock().lock();
+		try {
+			return super.search(queries, partial, k);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public String toString() {
 		lock.readLock().lock();
@@ -32,17 +32,31 @@ public class ThreadSafeIndexBuilder {
 	 * @throws IOException when an IOException occurs
 	 * 
 	 */
-	public static void build(Path start, ThreadSafeIndex index, WorkQueue queue) throws IOException {
+	public static void build(Path start, ThreadSafeIndex index, TaskQueue queue) throws IOException {
+		build(start, index, queue, StemmerProvider.ENGLISH);
+	}
+
+	/**
+	 * Building code to construct a thread-safe version of an InvertedIndex, where
+	 * each worker thread reuses the one stemmer the provider keeps for it
+	 * 
+	 * @param start    file path to read data from
+	 * @param index    the thread-safe inverted index to populate
+	 * @param queue    work queue to use
+	 * @param stemmers provider of the stemmer of each worker thread
+	 * @throws IOException when an IOException occurs
+	 */
+	public static void build(Path start, ThreadSafeIndex index, TaskQueue queue, StemmerProvider stemmers)
+			throws IOException {
 		try {
 			List<Path> files = FileFinder.listText(start, start);
 			for (Path file : files) {
 				queue.execute(() -> {
 					try {
-						InvertedIndex local = new InvertedIndex();
 						log.debug("Thread {} started index build work on {}", Thread.currentThread().getName(),
 								file.toString());
-						InvertedIndexBuilder.parseFile(file, local);
-						index.addAll(local);
+						DocumentAccumulator document = InvertedIndexBuilder.parseDocument(file, stemmers);
+						index.addAll(document);
 						log.debug("Thread {} finished index build work on {}", Thread.currentThread().getName(),
 								file.toString());
 					} catch (IOException e) {
@@ -52,6 +66,7 @@ public class ThreadSafeIndexBuilder {
 			}
 		} finally {
 			queue.finish();
+			index.flush();
 		}
 
 	}
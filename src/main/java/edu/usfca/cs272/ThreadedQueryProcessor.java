@@ -7,10 +7,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,26 +27,71 @@ import edu.usfca.cs272.InvertedIndex.SearchResult;
  */
 public class ThreadedQueryProcessor implements QueryInterface {
 
-	/** Initalize queryResults */
-	private final Map<String, List<SearchResult>> results;
+	/**
+	 * Initalize inFlight. Each query being searched, with the generation of the
+	 * index it is searched at, maps to the future of its results, so concurrent
+	 * callers for the same query wait on the one search in progress while
+	 * different queries run in parallel
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<List<SearchResult>>> inFlight;
+	/**
+	 * Initalize results of the queries processed in full, kept for
+	 * {@link #writeResults(Path)} apart from the cache so they are never evicted
+	 */
+	private final TreeMap<String, List<SearchResult>> results;
+	/** Initalize cache of finished searches */
+	private final QueryCache cache;
 	/** initalize index */
-	private final ThreadSafeIndex index;
+	private final InvertedIndex index;
 	/** initalize queue */
-	private final WorkQueue queue;
+	private final TaskQueue queue;
+	/** initalize provider of the stemmer of each worker */
+	private final StemmerProvider stemmers;
 
 	/** initalize logger */
 	private final Logger log = LogManager.getLogger("edu.usfca.cs272.ThreadedIndexBuilder");
 
 	/**
-	 * Default constructor
+	 * Default constructor, which caches results in a cache of the default weight
+	 * 
+	 * @param index     index to search, which must be safe to read from multiple
+	 *                  threads (a ThreadSafeIndex or MappedIndex)
+	 * @param workQueue WorkQueue to manage multiple threads
+	 */
+	public ThreadedQueryProcessor(InvertedIndex index, TaskQueue workQueue) {
+		this(index, workQueue, new QueryCache());
+	}
+
+	/**
+	 * Constructor with a result cache
 	 * 
-	 * @param index     ThreadSafeInvertedIndex we wish to populate
+	 * @param index     index to search, which must be safe to read from multiple
+	 *                  threads (a ThreadSafeIndex or MappedIndex)
 	 * @param workQueue WorkQueue to manage multiple threads
+	 * @param cache     cache to keep finished results in
 	 */
-	public ThreadedQueryProcessor(ThreadSafeIndex index, WorkQueue workQueue) {
-		this.results = new TreeMap<String, List<SearchResult>>();
+	public ThreadedQueryProcessor(InvertedIndex index, TaskQueue workQueue, QueryCache cache) {
+		this(index, workQueue, cache, StemmerProvider.ENGLISH);
+	}
+
+	/**
+	 * Constructor with a result cache and a provider of stemmers
+	 * 
+	 * @param index     index to search, which must be safe to read from multiple
+	 *                  threads (a ThreadSafeIndex or MappedIndex)
+	 * @param workQueue WorkQueue to manage multiple threads
+	 * @param cache     cache to keep finished results in
+	 * @param stemmers  provider of the stemmer of each worker, which must stem the
+	 *                  same way as the index was built
+	 */
+	public ThreadedQueryProcessor(InvertedIndex index, TaskQueue workQueue, QueryCache cache,
+			StemmerProvider stemmers) {
+		this.inFlight = new ConcurrentHashMap<>();
+		this.results = new TreeMap<>();
+		this.cache = cache;
 		this.index = index;
 		this.queue = workQueue;
+		this.stemmers = stemmers;
 	}
 
 	@Override
@@ -68,27 +115,71 @@ public class ThreadedQueryProcessor implements QueryInterface {
 
 	@Override
 	public List<SearchResult> processQuery(String line, boolean partialFlag) {
-		TreeSet<String> uniqueStems = FileStemmer.uniqueStems(line);
-		List<SearchResult> queryResults;
+		TreeSet<String> uniqueStems = FileStemmer.uniqueStems(line, stemmers.get());
 		if (!uniqueStems.isEmpty()) {
-			String cleanedLine = String.join(" ", uniqueStems);
+			String query = String.join(" ", uniqueStems);
+			List<SearchResult> queryResults = search(QueryCache.key(query, partialFlag),
+					() -> index.indexSearch(uniqueStems, partialFlag));
 			synchronized (results) {
-				queryResults = results.get(cleanedLine);
-				if (queryResults != null) {
-					return Collections.unmodifiableList(queryResults);
-				} else {
-					results.put(cleanedLine, Collections.emptyList());
-				}
-				queryResults = index.indexSearch(uniqueStems, partialFlag);
-				synchronized (results) {
-					results.put(cleanedLine, queryResults);
-					return Collections.unmodifiableList(queryResults);
-				}
+				results.put(query, queryResults);
 			}
+			return Collections.unmodifiableList(queryResults);
+		}
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<SearchResult> processQuery(String line, boolean partialFlag, int limit) {
+		TreeSet<String> uniqueStems = FileStemmer.uniqueStems(line, stemmers.get());
+		if (!uniqueStems.isEmpty()) {
+			String query = String.join(" ", uniqueStems);
+			return Collections.unmodifiableList(search(QueryCache.key(query, partialFlag, limit),
+					() -> index.search(uniqueStems, partialFlag, limit)));
 		}
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Returns the results of a query from the cache, or searches the index for
+	 * them. Concurrent callers asking for the same query at the same generation of
+	 * the index, whether from the work queue or from a servlet, wait on a single
+	 * search instead of each searching the index
+	 * 
+	 * @param query  the key of the query in the cache
+	 * @param search the search of the index to run on a miss
+	 * @return the results of the query, in ranked order
+	 */
+	private List<SearchResult> search(String query, Supplier<List<SearchResult>> search) {
+		long generation = index.getGeneration();
+		List<SearchResult> queryResults = cache.get(query, generation);
+		if (queryResults != null) {
+			return queryResults;
+		}
+		// a caller at a newer generation must not join a search of an older one
+		String key = generation + " " + query;
+		CompletableFuture<List<SearchResult>> created = new CompletableFuture<>();
+		CompletableFuture<List<SearchResult>> future = inFlight.putIfAbsent(key, created);
+		if (future == null) {
+			future = created;
+			try {
+				queryResults = search.get();
+				cache.put(query, generation, queryResults);
+				created.complete(queryResults);
+			} catch (RuntimeException e) {
+				created.completeExceptionally(e);
+				throw e;
+			} finally {
+				inFlight.remove(key, created);
+			}
+		}
+		return future.join();
+	}
+
+	@Override
+	public QueryCache getCache() {
+		return cache;
+	}
+
 	/**
 	 * Getter to return all stored queries
 	 * 
@@ -96,7 +187,9 @@ public class ThreadedQueryProcessor implements QueryInterface {
 	 */
 	@Override
 	public Set<String> getQueries() {
-		return Collections.unmodifiableSet(results.keySet());
+		synchronized (results) {
+			return Collections.unmodifiableSet(new TreeSet<>(results.keySet()));
+		}
 	}
 
 	/**
@@ -0,0 +1,245 @@
+package edu.usfca.cs272;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Splits text into the same clean words as {@link FileStemmer#parse(String)},
+ * in a single pass and without copying the text. Words are read one at a time
+ * into a buffer that is reused for every word, so only callers that keep a word
+ * need to turn it into a {@link String}.
+ *
+ * ASCII text is cleaned and lowercased as it is read. Only a run of text
+ * between whitespace that contains other characters is cleaned with
+ * {@link FileStemmer#clean(String)}, which normalizes it to NFD first, so the
+ * words are the same as if the whole text had been cleaned at once.
+ *
+ * <pre>
+ * Tokenizer words = new Tokenizer();
+ * words.reset(line);
+ * while (words.next()) {
+ * 	CharSequence word = words.word();
+ * }
+ * </pre>
+ *
+ * A tokenizer is not safe to share between threads.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class Tokenizer {
+	/** What each ASCII character is: a letter, whitespace, or neither. */
+	private static final byte[] ASCII = new byte[128];
+
+	/** Removed from the text. */
+	private static final byte OTHER = 0;
+
+	/** Kept and lowercased. */
+	private static final byte LETTER = 1;
+
+	/** Kept, and separates words. */
+	private static final byte SPACE = 2;
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			ASCII[c] = LETTER;
+			ASCII[Character.toUpperCase(c)] = LETTER;
+		}
+		ASCII[' '] = SPACE;
+		for (char c = '\t'; c <= '\r'; c++) {
+			ASCII[c] = SPACE;
+		}
+	}
+
+	/**
+	 * Initalize text being split
+	 */
+	private CharSequence text;
+
+	/**
+	 * Initalize index of the next character to read
+	 */
+	private int index;
+
+	/**
+	 * Initalize buffer holding the current word
+	 */
+	private final StringBuilder word;
+
+	/**
+	 * Initalize whether an empty word comes before the first word
+	 */
+	private boolean leadingEmpty;
+
+	/**
+	 * Initalize whether nothing before the current word is kept by cleaning
+	 */
+	private boolean first;
+
+	/**
+	 * Initalize whether the default locale lowercases 'I' to a dotless 'ı'
+	 */
+	private boolean dotless;
+
+	/**
+	 * Constructor
+	 */
+	public Tokenizer() {
+		this.word = new StringBuilder();
+		reset("");
+	}
+
+	/**
+	 * Starts splitting new text.
+	 *
+	 * @param text the text to split
+	 * @return this tokenizer
+	 */
+	public Tokenizer reset(CharSequence text) {
+		this.text = text;
+		this.index = 0;
+		this.word.setLength(0);
+		this.first = true;
+		String language = Locale.getDefault().getLanguage();
+		this.dotless = language.equals("tr") || language.equals("az");
+		this.leadingEmpty = startsWithHardSpace(text);
+		return this;
+	}
+
+	/**
+	 * Reads the next word.
+	 *
+	 * @return true if there was another word, false once the text is used up
+	 */
+	public boolean next() {
+		if (!leadingEmpty) {
+			return read();
+		}
+		// the text splits into an empty word, but only if a word follows it
+		leadingEmpty = false;
+		int start = index;
+		if (!read()) {
+			return false;
+		}
+		index = start;
+		word.setLength(0);
+		return true;
+	}
+
+	/**
+	 * Returns the current word. The buffer is reused by the next call to
+	 * {@link #next()}, so the word must be copied to be kept.
+	 *
+	 * @return the word read by the last call to {@link #next()}
+	 */
+	public CharSequence word() {
+		return word;
+	}
+
+	/**
+	 * Reads the next nonempty word into the buffer.
+	 *
+	 * @return true if there was another word
+	 */
+	private boolean read() {
+		int length = text.length();
+		while (index < length) {
+			word.setLength(0);
+			int start = index;
+			boolean fallback = false;
+			while (index < length) {
+				char c = text.charAt(index);
+				if (c < 128 && !(dotless && c == 'I')) {
+					byte type = ASCII[c];
+					if (type == SPACE) {
+						break;
+					}
+					if (type == LETTER) {
+						word.append((char) (c | 0x20));
+					}
+				} else if (isSpace(c)) {
+					break;
+				} else {
+					fallback = true;
+				}
+				index++;
+			}
+			if (fallback) {
+				word.setLength(0);
+				if (first) {
+					word.append(FileStemmer.clean(text.subSequence(start, index).toString()));
+				} else {
+					// lowercasing a final sigma depends on whether anything comes before it
+					String cleaned = FileStemmer.clean(" " + text.subSequence(start, index));
+					word.append(cleaned, 1, cleaned.length());
+				}
+			}
+			if (index < length || word.length() > 0) {
+				first = false;
+			}
+			index++;
+			if (word.length() > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the first character left after cleaning the text, and
+	 * stripping leading whitespace from it, is a space that
+	 * {@link String#strip()} does not strip, such as a no-break space.
+	 * {@link FileStemmer#split(String)} splits such text into an empty word
+	 * before the first word.
+	 *
+	 * @param text the text to check
+	 * @return true if the text splits into an empty word first
+	 */
+	private static boolean startsWithHardSpace(CharSequence text) {
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (c < 128) {
+				if (ASCII[c] == LETTER) {
+					return false;
+				}
+				i++;
+				continue;
+			}
+			int codePoint = Character.codePointAt(text, i);
+			i += Character.charCount(codePoint);
+			if (isSpace(c)) {
+				if (!Character.isWhitespace(c)) {
+					return true;
+				}
+				continue;
+			}
+			String decomposed = Normalizer.normalize(Character.toString(codePoint), Normalizer.Form.NFD);
+			if (decomposed.codePoints().anyMatch(Character::isAlphabetic)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a character is whitespace, the same way as
+	 * {@link FileStemmer#SPLIT_REGEX}.
+	 *
+	 * @param c the character
+	 * @return true if the character separates words
+	 */
+	private static boolean isSpace(char c) {
+		if (c < 128) {
+			return ASCII[c] == SPACE;
+		}
+		if (c == '\u0085') {
+			return true;
+		}
+		int type = Character.getType(c);
+		return type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+				|| type == Character.PARAGRAPH_SEPARATOR;
+	}
+}
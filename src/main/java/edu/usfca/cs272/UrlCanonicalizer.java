@@ -0,0 +1,598 @@
+package edu.usfca.cs272;
+
+import java.net.IDN;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns links into canonical absolute HTTP(S) URLs, so each page has exactly one
+ * name in the crawl. Links are resolved against the URL of their page as in RFC
+ * 3986, working on the characters of the strings instead of building
+ * {@link java.net.URL} or {@link java.net.URI} objects. The canonical form has:
+ *
+ * <ul>
+ * <li>a lowercase scheme, which must be http or https</li>
+ * <li>a lowercase host, converted to ASCII if needed, without user info</li>
+ * <li>no port if it is the default port of the scheme</li>
+ * <li>a path without {@code .} and {@code ..} segments, and {@code /} if empty</li>
+ * <li>percent escapes in uppercase, unreserved characters unescaped, and other
+ * characters escaped as UTF-8</li>
+ * <li>the query dropped, kept, or with its parameters sorted, depending on the
+ * {@link QueryPolicy}</li>
+ * <li>no fragment</li>
+ * </ul>
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class UrlCanonicalizer {
+	/**
+	 * What to do with the query of a URL.
+	 */
+	public enum QueryPolicy {
+		/** Remove the query, so pages that only differ by query are one page. */
+		DROP,
+		/** Keep the query as it is, other than its escapes. */
+		KEEP,
+		/** Keep the query with its parameters in sorted order. */
+		SORT
+	}
+
+	/** Canonicalizer used by the crawler unless told otherwise, dropping queries. */
+	public static final UrlCanonicalizer DEFAULT = new UrlCanonicalizer(QueryPolicy.DROP);
+
+	/** Digits of percent escapes. */
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Initalize query policy
+	 */
+	private final QueryPolicy query;
+
+	/**
+	 * Constructor
+	 *
+	 * @param query what to do with the query of a URL
+	 */
+	public UrlCanonicalizer(QueryPolicy query) {
+		this.query = query;
+	}
+
+	/**
+	 * @return what is done with the query of a URL
+	 */
+	public QueryPolicy getQueryPolicy() {
+		return query;
+	}
+
+	/**
+	 * Canonicalizes an absolute URL.
+	 *
+	 * @param url the url
+	 * @return the canonical url, or null if it is not a valid absolute HTTP(S) url
+	 */
+	public String canonicalize(CharSequence url) {
+		return canonicalize(null, url);
+	}
+
+	/**
+	 * Resolves a link against the URL of its page and canonicalizes it.
+	 *
+	 * @param base the url of the page, or null if the link must be absolute
+	 * @param href the link
+	 * @return the canonical url, or null if it does not resolve to a valid HTTP(S)
+	 *         url
+	 */
+	public String canonicalize(String base, CharSequence href) {
+		int start = 0;
+		int end = href.length();
+		while (start < end && href.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && href.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		Parts ref = new Parts(href, start, end);
+		Parts basis = null;
+		String scheme = ref.schemeEnd < 0 ? null : scheme(href, start, ref.schemeEnd);
+		if (ref.schemeEnd >= 0 && scheme == null) {
+			return null;
+		}
+		boolean relative = ref.authorityStart < 0;
+		if (relative || scheme == null) {
+			if (base == null) {
+				return null;
+			}
+			basis = new Parts(base, 0, base.length());
+			String baseScheme = basis.schemeEnd < 0 ? null : scheme(base, 0, basis.schemeEnd);
+			// "http:page.html" is relative to a base of the same scheme, as in browsers
+			if (baseScheme == null || basis.authorityStart < 0 || (scheme != null && !scheme.equals(baseScheme))) {
+				return null;
+			}
+			scheme = baseScheme;
+		}
+
+		StringBuilder out = new StringBuilder(end - start + (base == null ? 8 : base.length()));
+		out.append(scheme).append("://");
+		Parts authority = relative ? basis : ref;
+		if (!appendAuthority(out, authority.text, authority.authorityStart, authority.authorityEnd,
+				scheme.equals("https") ? 443 : 80)) {
+			return null;
+		}
+
+		int root = out.length();
+		Parts queryFrom = ref;
+		if (!relative || (ref.pathEnd > ref.pathStart && href.charAt(ref.pathStart) == '/')) {
+			appendPath(out, root, href, ref.pathStart, ref.pathEnd);
+		} else if (ref.pathEnd == ref.pathStart) {
+			appendPath(out, root, base, basis.pathStart, basis.pathEnd);
+			if (ref.queryStart < 0) {
+				queryFrom = basis;
+			}
+		} else {
+			int slash = lastIndexOf(base, '/', basis.pathStart, basis.pathEnd);
+			if (slash < 0) {
+				out.append('/');
+			} else {
+				appendPath(out, root, base, basis.pathStart, slash + 1);
+			}
+			appendPath(out, root, href, ref.pathStart, ref.pathEnd);
+		}
+		if (out.length() == root) {
+			out.append('/');
+		} else {
+			removeDotSegment(out, root);
+		}
+
+		if (query != QueryPolicy.DROP && queryFrom.queryStart >= 0) {
+			appendQuery(out, queryFrom.text, queryFrom.queryStart, queryFrom.end);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Returns the 64-bit fingerprint of a canonical URL, used to tell URLs apart
+	 * without keeping them. Equal strings always have the same fingerprint.
+	 *
+	 * @param url the canonical url
+	 * @return the fingerprint, never 0
+	 */
+	public static long fingerprint(CharSequence url) {
+		// FNV-1a over the characters, then the MurmurHash3 finalizer to spread the
+		// bits of short, similar urls over the whole long
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < url.length(); i++) {
+			hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+		}
+		hash ^= url.length();
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * Returns the scheme if it is http or https, in any case.
+	 *
+	 * @param text  the url
+	 * @param start the start of the scheme
+	 * @param end   the end of the scheme
+	 * @return "http", "https", or null for any other scheme
+	 */
+	private static String scheme(CharSequence text, int start, int end) {
+		int length = end - start;
+		if ((length != 4 && length != 5) || !regionMatches(text, start, "http")) {
+			return null;
+		}
+		if (length == 4) {
+			return "http";
+		}
+		char s = text.charAt(start + 4);
+		return s == 's' || s == 'S' ? "https" : null;
+	}
+
+	/**
+	 * Appends the host and port of an authority, dropping any user info and the
+	 * default port.
+	 *
+	 * @param out         where to append
+	 * @param text        the url
+	 * @param start       the start of the authority
+	 * @param end         the end of the authority
+	 * @param defaultPort the default port of the scheme
+	 * @return false if the host or port is not valid
+	 */
+	private static boolean appendAuthority(StringBuilder out, CharSequence text, int start, int end,
+			int defaultPort) {
+		int at = lastIndexOf(text, '@', start, end);
+		if (at >= 0) {
+			start = at + 1;
+		}
+		int hostEnd = end;
+		int portStart = -1;
+		if (start < end && text.charAt(start) == '[') {
+			int close = indexOf(text, ']', start, end);
+			if (close < 0) {
+				return false;
+			}
+			hostEnd = close + 1;
+			if (hostEnd < end) {
+				if (text.charAt(hostEnd) != ':') {
+					return false;
+				}
+				portStart = hostEnd + 1;
+			}
+		} else {
+			int colon = lastIndexOf(text, ':', start, end);
+			if (colon >= 0) {
+				hostEnd = colon;
+				portStart = colon + 1;
+			}
+		}
+		if (hostEnd == start || !appendHost(out, text, start, hostEnd)) {
+			return false;
+		}
+
+		if (portStart >= 0 && portStart < end) {
+			int port = 0;
+			for (int i = portStart; i < end; i++) {
+				char c = text.charAt(i);
+				if (c < '0' || c > '9') {
+					return false;
+				}
+				port = port * 10 + (c - '0');
+				if (port > 65535) {
+					return false;
+				}
+			}
+			if (port != defaultPort) {
+				out.append(':').append(port);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends a host in lowercase, converting international names to ASCII.
+	 *
+	 * @param out   where to append
+	 * @param text  the url
+	 * @param start the start of the host
+	 * @param end   the end of the host
+	 * @return false if the host is not valid
+	 */
+	private static boolean appendHost(StringBuilder out, CharSequence text, int start, int end) {
+		int mark = out.length();
+		boolean literal = text.charAt(start) == '[';
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				out.append((char) (c + ('a' - 'A')));
+			} else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-'
+					|| (literal ? c == ':' || c == '[' || c == ']' : c == '_')) {
+				out.append(c);
+			} else if (c >= 0x80 && !literal) {
+				out.setLength(mark);
+				try {
+					String ascii = IDN.toASCII(text.subSequence(start, end).toString());
+					return !ascii.isEmpty() && appendHost(out, ascii, 0, ascii.length());
+				} catch (IllegalArgumentException e) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends part of a path, escaping it and removing {@code .} and {@code ..}
+	 * segments as each one ends.
+	 *
+	 * @param out   where to append
+	 * @param root  where the path starts in the output
+	 * @param text  the url
+	 * @param start the start of the part
+	 * @param end   the end of the part
+	 */
+	private static void appendPath(StringBuilder out, int root, CharSequence text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == '/') {
+				if (out.length() == root || !removeDotSegment(out, root)) {
+					out.append('/');
+				}
+			} else {
+				i = appendEscaped(out, text, i, end, false);
+			}
+		}
+	}
+
+	/**
+	 * Removes the last segment of the path if it is {@code .}, or it and the
+	 * segment before if it is {@code ..}.
+	 *
+	 * @param out  the output, ending with the segment
+	 * @param root where the path starts in the output
+	 * @return true if a segment was removed, leaving the output ending with a
+	 *         {@code /}
+	 */
+	private static boolean removeDotSegment(StringBuilder out, int root) {
+		int length = out.length();
+		int slash = lastIndexOf(out, '/', root, length);
+		int segment = length - slash - 1;
+		if (slash < 0 || segment < 1 || segment > 2 || out.charAt(slash + 1) != '.') {
+			return false;
+		}
+		if (segment == 1) {
+			out.setLength(slash + 1);
+			return true;
+		}
+		if (out.charAt(slash + 2) != '.') {
+			return false;
+		}
+		int previous = slash == root ? -1 : lastIndexOf(out, '/', root, slash);
+		out.setLength(previous < 0 ? root + 1 : previous + 1);
+		return true;
+	}
+
+	/**
+	 * Appends the query, with its parameters sorted if asked for.
+	 *
+	 * @param out   where to append
+	 * @param text  the url
+	 * @param start the start of the query, after the {@code ?}
+	 * @param end   the end of the query
+	 */
+	private void appendQuery(StringBuilder out, CharSequence text, int start, int end) {
+		if (start >= end) {
+			return;
+		}
+		if (query == QueryPolicy.KEEP) {
+			out.append('?');
+			for (int i = start; i < end; i++) {
+				i = appendEscaped(out, text, i, end, true);
+			}
+			return;
+		}
+		List<String> parameters = new ArrayList<>();
+		StringBuilder parameter = new StringBuilder();
+		for (int i = start; i <= end; i++) {
+			if (i == end || text.charAt(i) == '&') {
+				if (parameter.length() > 0) {
+					parameters.add(parameter.toString());
+					parameter.setLength(0);
+				}
+			} else {
+				i = appendEscaped(parameter, text, i, end, true);
+			}
+		}
+		Collections.sort(parameters);
+		char separator = '?';
+		for (String value : parameters) {
+			out.append(separator).append(value);
+			separator = '&';
+		}
+	}
+
+	/**
+	 * Appends one character of a path or query, or one percent escape, in
+	 * canonical form.
+	 *
+	 * @param out   where to append
+	 * @param text  the url
+	 * @param i     the index of the character
+	 * @param end   the end of the path or query
+	 * @param query whether the character is in the query, where {@code ?} and
+	 *              {@code /} are allowed as they are
+	 * @return the index of the last character used
+	 */
+	private static int appendEscaped(StringBuilder out, CharSequence text, int i, int end, boolean query) {
+		char c = text.charAt(i);
+		if (c == '%') {
+			int high = i + 2 < end ? Character.digit(text.charAt(i + 1), 16) : -1;
+			int low = high < 0 ? -1 : Character.digit(text.charAt(i + 2), 16);
+			if (low < 0) {
+				out.append("%25");
+				return i;
+			}
+			char decoded = (char) (high << 4 | low);
+			if (isUnreserved(decoded)) {
+				out.append(decoded);
+			} else {
+				out.append('%').append(HEX[high]).append(HEX[low]);
+			}
+			return i + 2;
+		}
+		if (isUnreserved(c) || isSubDelimiter(c) || c == ':' || c == '@' || (query && (c == '/' || c == '?'))) {
+			out.append(c);
+			return i;
+		}
+		int codePoint = c;
+		if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+			codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+			i++;
+		} else if (Character.isSurrogate(c)) {
+			codePoint = 0xFFFD;
+		}
+		if (codePoint < 0x80) {
+			escape(out, codePoint);
+		} else if (codePoint < 0x800) {
+			escape(out, 0xC0 | codePoint >> 6);
+			escape(out, 0x80 | codePoint & 0x3F);
+		} else if (codePoint < 0x10000) {
+			escape(out, 0xE0 | codePoint >> 12);
+			escape(out, 0x80 | codePoint >> 6 & 0x3F);
+			escape(out, 0x80 | codePoint & 0x3F);
+		} else {
+			escape(out, 0xF0 | codePoint >> 18);
+			escape(out, 0x80 | codePoint >> 12 & 0x3F);
+			escape(out, 0x80 | codePoint >> 6 & 0x3F);
+			escape(out, 0x80 | codePoint & 0x3F);
+		}
+		return i;
+	}
+
+	/**
+	 * Appends a byte as a percent escape.
+	 *
+	 * @param out   where to append
+	 * @param value the byte
+	 */
+	private static void escape(StringBuilder out, int value) {
+		out.append('%').append(HEX[value >> 4 & 0xF]).append(HEX[value & 0xF]);
+	}
+
+	/**
+	 * @param c the character
+	 * @return true if the character never needs escaping
+	 */
+	private static boolean isUnreserved(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.'
+				|| c == '_' || c == '~';
+	}
+
+	/**
+	 * @param c the character
+	 * @return true if the character is a delimiter allowed in paths and queries
+	 */
+	private static boolean isSubDelimiter(char c) {
+		return c == '!' || c == '$' || c == '&' || c == '\'' || c == '(' || c == ')' || c == '*' || c == '+'
+				|| c == ',' || c == ';' || c == '=';
+	}
+
+	/**
+	 * @param text   the text
+	 * @param start  where to look
+	 * @param prefix the lowercase ASCII prefix
+	 * @return true if the text has the prefix at the start, ignoring case
+	 */
+	private static boolean regionMatches(CharSequence text, int start, String prefix) {
+		for (int i = 0; i < prefix.length(); i++) {
+			if ((text.charAt(start + i) | 0x20) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param text  the text
+	 * @param c     the character to find
+	 * @param start where to start looking
+	 * @param end   where to stop looking
+	 * @return the index of the first match, or -1
+	 */
+	private static int indexOf(CharSequence text, char c, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param text  the text
+	 * @param c     the character to find
+	 * @param start where to stop looking
+	 * @param end   where to start looking backwards
+	 * @return the index of the last match, or -1
+	 */
+	private static int lastIndexOf(CharSequence text, char c, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			if (text.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Where the scheme, authority, path, and query of a URL or link are, without
+	 * its fragment.
+	 */
+	private static class Parts {
+		/** Initalize url */
+		private final CharSequence text;
+
+		/** Initalize index of the colon after the scheme, or -1 if none */
+		private final int schemeEnd;
+
+		/** Initalize start of the authority, or -1 if none */
+		private final int authorityStart;
+
+		/** Initalize end of the authority */
+		private final int authorityEnd;
+
+		/** Initalize start of the path */
+		private final int pathStart;
+
+		/** Initalize end of the path */
+		private final int pathEnd;
+
+		/** Initalize start of the query after the {@code ?}, or -1 if none */
+		private final int queryStart;
+
+		/** Initalize end of the url, before any fragment */
+		private final int end;
+
+		/**
+		 * Finds the parts of a URL.
+		 *
+		 * @param text  the url
+		 * @param start the start of the url
+		 * @param end   the end of the url
+		 */
+		private Parts(CharSequence text, int start, int end) {
+			this.text = text;
+			int fragment = indexOf(text, '#', start, end);
+			this.end = fragment < 0 ? end : fragment;
+			int i = start;
+			int colon = -1;
+			if (i < this.end && isAlpha(text.charAt(i))) {
+				for (i++; i < this.end; i++) {
+					char c = text.charAt(i);
+					if (c == ':') {
+						colon = i;
+						break;
+					}
+					if (!isAlpha(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+						break;
+					}
+				}
+			}
+			this.schemeEnd = colon;
+			i = colon < 0 ? start : colon + 1;
+			if (i + 1 < this.end && text.charAt(i) == '/' && text.charAt(i + 1) == '/') {
+				this.authorityStart = i + 2;
+				int stop = this.authorityStart;
+				while (stop < this.end && text.charAt(stop) != '/' && text.charAt(stop) != '?') {
+					stop++;
+				}
+				this.authorityEnd = stop;
+				i = stop;
+			} else {
+				this.authorityStart = -1;
+				this.authorityEnd = -1;
+			}
+			this.pathStart = i;
+			int question = indexOf(text, '?', i, this.end);
+			this.pathEnd = question < 0 ? this.end : question;
+			this.queryStart = question < 0 ? -1 : question + 1;
+		}
+
+		/**
+		 * @param c the character
+		 * @return true if the character is an ASCII letter
+		 */
+		private static boolean isAlpha(char c) {
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+		}
+	}
+}
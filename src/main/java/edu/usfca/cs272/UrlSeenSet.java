@@ -0,0 +1,328 @@
+package edu.usfca.cs272;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent set of URLs seen by a crawl, storing a 64-bit fingerprint of each
+ * URL instead of the URL itself. Fingerprints are kept in open-addressing
+ * tables of primitive longs, split into stripes that are locked on their own,
+ * so threads adding different URLs rarely wait on each other. Two URLs with the
+ * same fingerprint are treated as the same URL; with 64 bits this is unlikely
+ * to happen even once in a crawl of millions of URLs.
+ *
+ * An optional Bloom filter sized for the expected number of URLs answers most
+ * lookups of URLs that were never seen without taking any lock.
+ *
+ * @author Grayson Ruehlmann
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class UrlSeenSet {
+	/** Default number of stripes. */
+	public static final int DEFAULT_STRIPES = 64;
+
+	/** Initial number of slots per stripe. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Fingerprint stored in empty slots. */
+	private static final long EMPTY = 0;
+
+	/**
+	 * Initalize stripes, chosen by the high bits of a fingerprint
+	 */
+	private final Stripe[] stripes;
+
+	/**
+	 * Initalize shift that turns a fingerprint into a stripe index
+	 */
+	private final int stripeShift;
+
+	/**
+	 * Initalize Bloom filter bits, or null for no filter
+	 */
+	private final AtomicLongArray bloom;
+
+	/**
+	 * Initalize number of bits in the Bloom filter
+	 */
+	private final long bloomBits;
+
+	/**
+	 * Initalize number of Bloom filter bits set per fingerprint
+	 */
+	private final int bloomHashes;
+
+	/**
+	 * Constructor without a Bloom filter
+	 */
+	public UrlSeenSet() {
+		this(DEFAULT_STRIPES, 0, 0);
+	}
+
+	/**
+	 * Constructor with a Bloom filter sized for the expected number of URLs
+	 *
+	 * @param expected          the expected number of URLs
+	 * @param falsePositiveRate the rate of unseen URLs the filter lets through to
+	 *                          the table once the expected number is reached
+	 */
+	public UrlSeenSet(int expected, double falsePositiveRate) {
+		this(DEFAULT_STRIPES, expected, falsePositiveRate);
+	}
+
+	/**
+	 * Constructor. An expected size of 0 means no Bloom filter.
+	 *
+	 * @param stripes           the number of stripes, rounded up to a power of two
+	 * @param expected          the expected number of URLs
+	 * @param falsePositiveRate the rate of unseen URLs the filter lets through to
+	 *                          the table once the expected number is reached
+	 */
+	public UrlSeenSet(int stripes, int expected, double falsePositiveRate) {
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("Stripes must be positive: " + stripes);
+		}
+		int count = Integer.highestOneBit(stripes);
+		count = count < stripes ? count << 1 : count;
+		this.stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(count);
+
+		if (expected > 0) {
+			if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+				throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+			}
+			double ln2 = Math.log(2);
+			long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+			int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + Long.SIZE - 1) / Long.SIZE);
+			this.bloom = new AtomicLongArray(words);
+			this.bloomBits = (long) words * Long.SIZE;
+			this.bloomHashes = Math.max(1, (int) Math.round((double) bloomBits / expected * ln2));
+		} else {
+			this.bloom = null;
+			this.bloomBits = 0;
+			this.bloomHashes = 0;
+		}
+	}
+
+	/**
+	 * Adds a URL.
+	 *
+	 * @param url the url
+	 * @return true if the url was not seen before
+	 */
+	public boolean add(CharSequence url) {
+		return add(UrlCanonicalizer.fingerprint(url));
+	}
+
+	/**
+	 * Adds a URL by its fingerprint.
+	 *
+	 * @param fingerprint the fingerprint from {@link UrlCanonicalizer#fingerprint(CharSequence)}
+	 * @return true if the fingerprint was not seen before
+	 */
+	public boolean add(long fingerprint) {
+		if (bloom != null) {
+			// set before the table, so a lookup never misses an added url
+			long hash = fingerprint;
+			long step = Long.rotateLeft(fingerprint, 32) | 1;
+			for (int i = 0; i < bloomHashes; i++) {
+				long bit = Math.floorMod(hash, bloomBits);
+				int word = (int) (bit >>> 6);
+				long mask = 1L << bit;
+				long current;
+				while (((current = bloom.get(word)) & mask) == 0 && !bloom.compareAndSet(word, current, current | mask)) {
+					// another thread set a bit in the same word, try again
+				}
+				hash += step;
+			}
+		}
+		return stripe(fingerprint).add(fingerprint);
+	}
+
+	/**
+	 * Checks whether a URL was seen.
+	 *
+	 * @param url the url
+	 * @return true if the url was added before
+	 */
+	public boolean contains(CharSequence url) {
+		return contains(UrlCanonicalizer.fingerprint(url));
+	}
+
+	/**
+	 * Checks whether a URL was seen by its fingerprint.
+	 *
+	 * @param fingerprint the fingerprint from {@link UrlCanonicalizer#fingerprint(CharSequence)}
+	 * @return true if the fingerprint was added before
+	 */
+	public boolean contains(long fingerprint) {
+		if (bloom != null) {
+			long hash = fingerprint;
+			long step = Long.rotateLeft(fingerprint, 32) | 1;
+			for (int i = 0; i < bloomHashes; i++) {
+				long bit = Math.floorMod(hash, bloomBits);
+				if ((bloom.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+				hash += step;
+			}
+		}
+		return stripe(fingerprint).contains(fingerprint);
+	}
+
+	/**
+	 * @return the number of URLs seen
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the fingerprints of every URL seen. URLs added while writing may or
+	 * may not be included.
+	 *
+	 * @param out the output to write to
+	 * @throws IOException if unable to write
+	 * @see #read(DataInput)
+	 */
+	public void write(DataOutput out) throws IOException {
+		long[][] tables = new long[stripes.length][];
+		int size = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			tables[i] = stripes[i].fingerprints();
+			size += tables[i].length;
+		}
+		out.writeInt(size);
+		for (long[] table : tables) {
+			for (long fingerprint : table) {
+				out.writeLong(fingerprint);
+			}
+		}
+	}
+
+	/**
+	 * Adds the fingerprints written by {@link #write(DataOutput)}.
+	 *
+	 * @param in the input to read from
+	 * @throws IOException if unable to read
+	 */
+	public void read(DataInput in) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			add(in.readLong());
+		}
+	}
+
+	/**
+	 * @param fingerprint the fingerprint
+	 * @return the stripe holding the fingerprint
+	 */
+	private Stripe stripe(long fingerprint) {
+		return stripes.length == 1 ? stripes[0] : stripes[(int) (fingerprint >>> stripeShift)];
+	}
+
+	@Override
+	public String toString() {
+		return "UrlSeenSet[size=" + size() + ", stripes=" + stripes.length + ", bloomBits=" + bloomBits + "]";
+	}
+
+	/**
+	 * Open-addressing table of fingerprints with linear probing, guarded by its
+	 * own lock.
+	 */
+	private static class Stripe {
+		/** Initalize slots, with {@link UrlSeenSet#EMPTY} marking an empty slot */
+		private long[] table;
+
+		/** Initalize number of fingerprints in the table */
+		private int size;
+
+		/**
+		 * Constructor
+		 */
+		private Stripe() {
+			this.table = new long[INITIAL_CAPACITY];
+			this.size = 0;
+		}
+
+		/**
+		 * @param fingerprint the fingerprint to add
+		 * @return true if the fingerprint was not in the table
+		 */
+		private synchronized boolean add(long fingerprint) {
+			int slot = find(table, fingerprint);
+			if (table[slot] == fingerprint) {
+				return false;
+			}
+			table[slot] = fingerprint;
+			size++;
+			// grow at three quarters full to keep probe sequences short
+			if (size > table.length - (table.length >>> 2)) {
+				long[] grown = new long[table.length << 1];
+				for (long old : table) {
+					if (old != EMPTY) {
+						grown[find(grown, old)] = old;
+					}
+				}
+				table = grown;
+			}
+			return true;
+		}
+
+		/**
+		 * @param fingerprint the fingerprint to find
+		 * @return true if the fingerprint is in the table
+		 */
+		private synchronized boolean contains(long fingerprint) {
+			return table[find(table, fingerprint)] == fingerprint;
+		}
+
+		/**
+		 * @return the number of fingerprints in the table
+		 */
+		private synchronized int size() {
+			return size;
+		}
+
+		/**
+		 * @return a copy of the fingerprints in the table
+		 */
+		private synchronized long[] fingerprints() {
+			long[] fingerprints = new long[size];
+			int i = 0;
+			for (long fingerprint : table) {
+				if (fingerprint != EMPTY) {
+					fingerprints[i++] = fingerprint;
+				}
+			}
+			return fingerprints;
+		}
+
+		/**
+		 * Finds the slot holding a fingerprint, or the empty slot where it belongs.
+		 *
+		 * @param table       the table to search
+		 * @param fingerprint the fingerprint
+		 * @return the index of the slot
+		 */
+		private static int find(long[] table, long fingerprint) {
+			int mask = table.length - 1;
+			// the low bits pick the slot, since the high bits picked the stripe
+			int slot = (int) fingerprint & mask;
+			while (table[slot] != EMPTY && table[slot] != fingerprint) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+	}
+}
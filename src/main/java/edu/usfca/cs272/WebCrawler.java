@@ -1,20 +1,21 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
-
+import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Object to assist with parsing links and HTML data. Uses data to construct
@@ -25,9 +26,10 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  */
 public class WebCrawler {
 	/**
-	 * Initalize visitedUrls
+	 * Initalize frontier, holding the urls admitted to the crawl until they are
+	 * fetched
 	 */
-	private Set<String> visitedUrls;
+	private final CrawlFrontier frontier;
 	/**
 	 * Initalize index
 	 */
@@ -35,15 +37,100 @@ public class WebCrawler {
 	/**
 	 * Initaize queue
 	 */
-	private WorkQueue queue;
-	/**
-	 * Initaize limit
-	 */
-	private int limit;
+	private TaskQueue queue;
 	/**
 	 * Initaize log
 	 */
 	private final Logger log = LogManager.getLogger("edu.usfca.cs272.WebCrawler");
+	/**
+	 * Initalize fetchers, which run fetches apart from the work queue, or null to
+	 * fetch on the work queue
+	 */
+	private final ExecutorService fetchers;
+	/**
+	 * Initalize fetch limit, capping the number of fetches in flight
+	 */
+	private final Semaphore fetchLimit;
+	/**
+	 * Initalize most fetches in flight
+	 */
+	private final int inFlight;
+	/**
+	 * Initalize parse stage, which stems the words of fetched pages, or null
+	 * to parse pages on the work queue
+	 */
+	private final PipelineStage<PageWork> parser;
+	/**
+	 * Initalize index stage, which merges parsed pages into the index and admits
+	 * their links, or null to index pages on the work queue
+	 */
+	private final PipelineStage<PageWork> indexer;
+	/**
+	 * Initalize pending, counting pages fetched or waiting to be fetched that have
+	 * not been indexed yet
+	 */
+	private int pending;
+	/**
+	 * Object used exclusively to wait for pending pages
+	 */
+	private final Object pendingLock;
+	/**
+	 * Initalize timer, which dispatches urls once their host is done waiting out
+	 * its delay, or null until it is needed
+	 */
+	private ScheduledExecutorService timer;
+	/**
+	 * Initalize time of the next timer dispatch, from {@link System#nanoTime()}
+	 */
+	private long wakeup;
+	/**
+	 * Initalize whether a timer dispatch is scheduled
+	 */
+	private boolean waking;
+	/**
+	 * Object used exclusively to schedule timer dispatches
+	 */
+	private final Object timerLock;
+	/**
+	 * Initalize connection pool, which also sets the fetch timeouts and body size
+	 */
+	private final HttpConnectionPool pool;
+	/**
+	 * Initalize outstanding, the urls admitted to the crawl that have not been
+	 * indexed yet
+	 */
+	private final Set<String> outstanding;
+	/**
+	 * Initalize crawl lock, held for reading while urls are admitted or pages are
+	 * indexed, and for writing while a checkpoint is saved
+	 */
+	private final MultiReaderLock crawlLock;
+	/**
+	 * Initalize checkpoint to save the crawl to, or null to not save the crawl
+	 */
+	private volatile CrawlCheckpoint checkpoint;
+	/**
+	 * Initalize scheduler of periodic checkpoints, kept apart from the timer so a
+	 * long save does not hold up dispatches, or null until a checkpoint is set
+	 */
+	private ScheduledExecutorService checkpointer;
+	/**
+	 * Object used exclusively to save one checkpoint at a time
+	 */
+	private final Object checkpointLock;
+	/**
+	 * Initalize index generation at the last checkpoint, to skip checkpoints while
+	 * the crawl is idle
+	 */
+	private long savedGeneration;
+	/**
+	 * Initalize number of urls admitted at the last checkpoint
+	 */
+	private int savedSize;
+	/**
+	 * Initalize provider of the stemmer each thread parses pages with
+	 */
+	private volatile StemmerProvider stemmers;
 
 	/**
 	 * Constructor, using an InvertedIndex
@@ -52,11 +139,165 @@ public class WebCrawler {
 	 * @param work     WorkQueue to use for WebCrawler
 	 * @param max      Maximum amount of urls that crawler can crawl
 	 */
-	public WebCrawler(ThreadSafeIndex inverted, WorkQueue work, int max) {
-		visitedUrls = new HashSet<String>();
+	public WebCrawler(ThreadSafeIndex inverted, TaskQueue work, int max) {
+		this(inverted, work, new CrawlFrontier(max), null, 0, HtmlFetcher.getPool(), 0, 0, 0);
+	}
+
+	/**
+	 * Constructor that fetches pages with the given connection pool
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param work     WorkQueue to use for WebCrawler
+	 * @param max      Maximum amount of urls that crawler can crawl
+	 * @param pool     pool of connections to fetch pages with
+	 */
+	public WebCrawler(ThreadSafeIndex inverted, TaskQueue work, int max, HttpConnectionPool pool) {
+		this(inverted, work, new CrawlFrontier(max), null, 0, pool, 0, 0, 0);
+	}
+
+	/**
+	 * Constructor that takes urls from the given frontier, which sets the crawl
+	 * limit and how politely each host is fetched from
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param work     WorkQueue to use for WebCrawler
+	 * @param frontier frontier of urls to crawl
+	 * @param pool     pool of connections to fetch pages with
+	 */
+	public WebCrawler(ThreadSafeIndex inverted, TaskQueue work, CrawlFrontier frontier, HttpConnectionPool pool) {
+		this(inverted, work, frontier, null, 0, pool, 0, 0, 0);
+	}
+
+	/**
+	 * Constructor that fetches pages on virtual threads, with up to the given
+	 * number of fetches in flight, and only parses and indexes pages on the work
+	 * queue. Slow hosts then hold up a cheap virtual thread each instead of a
+	 * worker. If virtual threads are not available in this Java version, a fixed
+	 * pool of one daemon thread per allowed fetch is used instead.
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param work     WorkQueue to parse and index pages on
+	 * @param max      Maximum amount of urls that crawler can crawl
+	 * @param inFlight Maximum number of fetches in flight at once
+	 */
+	public WebCrawler(ThreadSafeIndex inverted, TaskQueue work, int max, int inFlight) {
+		this(inverted, work, new CrawlFrontier(max), fetchExecutor(inFlight), inFlight, HtmlFetcher.getPool(), 0, 0, 0);
+	}
+
+	/**
+	 * Constructor that fetches pages on virtual threads, like
+	 * {@link #WebCrawler(ThreadSafeIndex, TaskQueue, int, int)}, with the given
+	 * connection pool
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param work     WorkQueue to parse and index pages on
+	 * @param max      Maximum amount of urls that crawler can crawl
+	 * @param inFlight Maximum number of fetches in flight at once
+	 * @param pool     pool of connections to fetch pages with
+	 */
+	public WebCrawler(ThreadSafeIndex inverted, TaskQueue work, int max, int inFlight, HttpConnectionPool pool) {
+		this(inverted, work, new CrawlFrontier(max), fetchExecutor(inFlight), inFlight, pool, 0, 0, 0);
+	}
+
+	/**
+	 * Constructor that fetches pages on virtual threads, like
+	 * {@link #WebCrawler(ThreadSafeIndex, TaskQueue, int, int)}, taking urls from
+	 * the given frontier
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param work     WorkQueue to parse and index pages on
+	 * @param frontier frontier of urls to crawl
+	 * @param inFlight Maximum number of fetches in flight at once
+	 * @param pool     pool of connections to fetch pages with
+	 */
+	public WebCrawler(ThreadSafeIndex inverted, TaskQueue work, CrawlFrontier frontier, int inFlight,
+			HttpConnectionPool pool) {
+		this(inverted, work, frontier, fetchExecutor(inFlight), inFlight, pool, 0, 0, 0);
+	}
+
+	/**
+	 * Constructor that crawls in a pipeline of three stages, each with threads of
+	 * its own: pages are fetched on virtual threads, like
+	 * {@link #WebCrawler(ThreadSafeIndex, TaskQueue, int, int)}, stemmed into
+	 * documents by the parse stage, and merged into the index by the index
+	 * stage, which also admits their links. Every stage hands off to the next
+	 * through a queue of the given capacity, and a fetch is only over once its
+	 * page is handed off, so a full queue slows down the stages before it. Fetch
+	 * concurrency and parsing parallelism can then be tuned apart.
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param frontier frontier of urls to crawl
+	 * @param inFlight Maximum number of fetches in flight at once
+	 * @param parsers  number of threads parsing pages
+	 * @param indexers number of threads merging pages into the index
+	 * @param capacity most pages waiting for each of the parse and index stages
+	 * @param pool     pool of connections to fetch pages with
+	 */
+	public WebCrawler(ThreadSafeIndex inverted, CrawlFrontier frontier, int inFlight, int parsers, int indexers,
+			int capacity, HttpConnectionPool pool) {
+		this(inverted, null, frontier, fetchExecutor(inFlight), inFlight, pool, parsers, indexers, capacity);
+	}
+
+	/**
+	 * Constructor used by the public constructors
+	 * 
+	 * @param inverted InvertedIndex to populate with WebCrawler data
+	 * @param work     WorkQueue to use for WebCrawler, or null to use stages
+	 * @param frontier frontier of urls to crawl
+	 * @param fetchers executor to fetch pages on, or null to use the work queue
+	 * @param inFlight Maximum number of fetches in flight at once
+	 * @param pool     pool of connections to fetch pages with
+	 * @param parsers  number of threads of the parse stage, if there is no queue
+	 * @param indexers number of threads of the index stage, if there is no queue
+	 * @param capacity capacity of the parse and index stages, if there is no queue
+	 */
+	private WebCrawler(ThreadSafeIndex inverted, TaskQueue work, CrawlFrontier frontier, ExecutorService fetchers,
+			int inFlight, HttpConnectionPool pool, int parsers, int indexers, int capacity) {
+		this.frontier = frontier;
 		index = inverted;
 		queue = work;
-		limit = max;
+		this.fetchers = fetchers;
+		this.fetchLimit = fetchers == null ? null : new Semaphore(inFlight);
+		this.inFlight = inFlight;
+		this.parser = work == null ? new PipelineStage<>("Parser", parsers, capacity, this::parseStage) : null;
+		this.indexer = work == null ? new PipelineStage<>("Indexer", indexers, capacity, this::indexStage) : null;
+		this.pending = 0;
+		this.pendingLock = new Object();
+		this.timer = null;
+		this.waking = false;
+		this.timerLock = new Object();
+		this.pool = pool;
+		this.outstanding = ConcurrentHashMap.newKeySet();
+		this.crawlLock = new MultiReaderLock();
+		this.checkpoint = null;
+		this.checkpointer = null;
+		this.checkpointLock = new Object();
+		this.stemmers = StemmerProvider.ENGLISH;
+		this.savedGeneration = -1;
+		this.savedSize = -1;
+	}
+
+	/**
+	 * Creates an executor that starts a virtual thread per fetch, falling back to
+	 * a fixed pool of daemon threads when virtual threads are not available
+	 * 
+	 * @param inFlight Maximum number of fetches in flight at once
+	 * @return the executor to fetch pages on
+	 */
+	private static ExecutorService fetchExecutor(int inFlight) {
+		if (inFlight <= 0) {
+			throw new IllegalArgumentException("Fetch limit must be positive: " + inFlight);
+		}
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(inFlight, task -> {
+				Thread thread = new Thread(task);
+				thread.setName("Fetcher" + thread.getName());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
 	}
 
 	/**
@@ -68,15 +309,396 @@ public class WebCrawler {
 	public void crawl(String seedUrl) {
 		try {
 			String cleanedUrl = cleanUrl(seedUrl);
+			if (cleanedUrl == null) {
+				System.err.println("Failed to crawl: " + seedUrl);
+				return;
+			}
+			crawlLock.readLock().lock();
+			try {
+				add(cleanedUrl);
+			} finally {
+				crawlLock.readLock().unlock();
+			}
+			dispatch();
+		} finally {
+			finish();
+			index.flush();
+			log.debug("Finished crawl of {}: {}", seedUrl, this);
+			if (checkpoint != null) {
+				saveCheckpoint();
+			}
+		}
+
+	}
+
+	/**
+	 * Parses pages with stemmers from the given provider instead of English
+	 * stemmers. Must be set before crawling.
+	 * 
+	 * @param stemmers the provider of the stemmer of each thread
+	 */
+	public void setStemmers(StemmerProvider stemmers) {
+		this.stemmers = stemmers;
+	}
+
+	/**
+	 * Saves the crawl to the given checkpoint now, when every crawl finishes, and
+	 * periodically in between, at the interval of the checkpoint
+	 * 
+	 * @param checkpoint the checkpoint to save the crawl to
+	 */
+	public void setCheckpoint(CrawlCheckpoint checkpoint) {
+		crawlLock.writeLock().lock();
+		try {
+			if (this.checkpoint != null) {
+				throw new IllegalStateException("Checkpoint already set: " + this.checkpoint);
+			}
+			this.checkpoint = checkpoint;
+			checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task);
+				thread.setName("Checkpoint" + thread.getName());
+				thread.setDaemon(true);
+				return thread;
+			});
+			long interval = checkpoint.getInterval();
+			checkpointer.scheduleWithFixedDelay(this::saveCheckpoint, interval, interval, TimeUnit.MILLISECONDS);
+		} finally {
+			crawlLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Restores the crawl from the latest checkpoint: the pages indexed are added to
+	 * the index, the urls seen are not admitted again, and the urls that were not
+	 * indexed yet are queued again. They are crawled by the next call to
+	 * {@link #crawl(String)}, so no page indexed before is fetched again.
+	 * 
+	 * @param checkpoint the checkpoint to restore from
+	 * @return the number of urls queued again
+	 * @throws IOException if there is no checkpoint or it cannot be read
+	 */
+	public int resume(CrawlCheckpoint checkpoint) throws IOException {
+		crawlLock.writeLock().lock();
+		try {
+			List<String> urls = checkpoint.load(index, frontier);
+			synchronized (pendingLock) {
+				pending += urls.size();
+			}
+			for (String url : urls) {
+				outstanding.add(url);
+				frontier.requeue(url);
+			}
+			return urls.size();
+		} finally {
+			crawlLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Saves the crawl to the checkpoint, unless nothing changed since the last
+	 * checkpoint. Admitting urls and indexing pages only waits while the crawl is
+	 * captured with a copy of the index, not while it is written, and fetches in
+	 * flight continue.
+	 */
+	private void saveCheckpoint() {
+		synchronized (checkpointLock) {
+			try {
+				long generation;
+				int size;
+				CrawlCheckpoint.State state;
+				crawlLock.writeLock().lock();
+				try {
+					// pages marked done must be in the index that is saved
+					index.flush();
+					generation = index.getGeneration();
+					size = frontier.size();
+					if (generation == savedGeneration && size == savedSize) {
+						return;
+					}
+					state = CrawlCheckpoint.capture(index.copy(), frontier, outstanding);
+				} finally {
+					crawlLock.writeLock().unlock();
+				}
+				checkpoint.save(state);
+				savedGeneration = generation;
+				savedSize = size;
+				log.debug("Saved checkpoint of {} urls", size);
+			} catch (IOException e) {
+				System.err.println("Warning: Unable to save crawl checkpoint to " + checkpoint.getDirectory());
+				log.catching(e);
+			}
+		}
+	}
+
+	/**
+	 * Admits a URL to the frontier, unless it was seen before or the crawl limit
+	 * is reached, counting it as pending until it has been crawled. The caller
+	 * must hold the crawl lock for reading.
+	 * 
+	 * @param url The canonical URL to crawl.
+	 */
+	private void add(String url) {
+		// counted first, so the crawl cannot look finished while the url is taken
+		synchronized (pendingLock) {
+			pending++;
+		}
+		boolean admitted = false;
+		try {
+			admitted = frontier.offer(url);
+			if (admitted) {
+				outstanding.add(url);
+			}
+		} finally {
+			if (!admitted) {
+				finished();
+			}
+		}
+	}
+
+	/**
+	 * Starts crawling every URL whose host is ready, and sets the timer for the
+	 * next host that is waiting out its delay
+	 */
+	private void dispatch() {
+		long wait;
+		while ((wait = frontier.nextReady()) == 0) {
+			String url = frontier.poll();
+			if (url != null) {
+				start(url);
+			}
+		}
+		if (wait > 0) {
+			wakeUp(wait);
+		}
+	}
+
+	/**
+	 * Dispatches again once the given time has passed, unless a dispatch is
+	 * already scheduled by then
+	 * 
+	 * @param wait the time to wait in nanoseconds
+	 */
+	private void wakeUp(long wait) {
+		long at = System.nanoTime() + wait;
+		synchronized (timerLock) {
+			if (waking && wakeup - at <= 0) {
+				return;
+			}
+			waking = true;
+			wakeup = at;
+			timer().schedule(() -> {
+				synchronized (timerLock) {
+					if (waking && wakeup == at) {
+						waking = false;
+					}
+				}
+				dispatch();
+			}, wait, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Returns the timer, creating it the first time. The caller must hold the timer
+	 * lock.
+	 * 
+	 * @return the timer
+	 */
+	private ScheduledExecutorService timer() {
+		if (timer == null) {
+			timer = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task);
+				thread.setName("Timer" + thread.getName());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return timer;
+	}
+
+	/**
+	 * Starts crawling a URL taken from the frontier
+	 * 
+	 * @param url The URL to crawl.
+	 */
+	private void start(String url) {
+		try {
+			if (fetchers == null) {
+				queue.execute(() -> crawlUrl(url));
+			} else {
+				fetchers.execute(() -> fetchUrl(url));
+			}
+		} catch (RuntimeException e) {
+			frontier.cancel(url);
+			finished(url);
+			throw e;
+		}
+	}
+
+	/**
+	 * Gives a fetched URL's host back to the frontier, and starts crawling the
+	 * URLs that frees up
+	 * 
+	 * @param url The URL fetched.
+	 */
+	private void fetched(String url) {
+		frontier.done(url);
+		dispatch();
+	}
+
+	/**
+	 * Fetches a URL under the fetch limit and hands the page off to be parsed and
+	 * indexed
+	 * 
+	 * @param url The URL to fetch.
+	 */
+	private void fetchUrl(String url) {
+		boolean handedOff = false;
+		try {
+			fetchLimit.acquire();
+			if (frontier.started(url)) {
+				dispatch();
+			}
+			try {
+				HtmlScanner.Page page;
+				try {
+					log.debug("Thread {} started fetching {}", Thread.currentThread().getName(), url);
+					page = HtmlFetcher.fetchPage(new URL(url), 3, pool, frontier.getCanonicalizer());
+				} finally {
+					fetched(url);
+				}
+				if (page != null) {
+					// the fetch is only over once handed off, so a full parse stage slows fetching
+					handedOff = handOff(url, page);
+				}
+			} finally {
+				fetchLimit.release();
+			}
+		} catch (MalformedURLException e) {
+			System.err.println("Failed to crawl: " + url);
+		} catch (InterruptedException e) {
+			log.catching(e);
+			// only waiting for a permit is interrupted, so the fetch never started
+			frontier.cancel(url);
+			dispatch();
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!handedOff) {
+				finished(url);
+			}
+		}
+	}
+
+	/**
+	 * Hands a fetched page off to the parse stage, waiting while it is full, or to
+	 * the work queue if there are no stages
+	 * 
+	 * @param url  The URL the page was fetched from.
+	 * @param page The links and text of the page.
+	 * @return true if the page was handed off
+	 */
+	private boolean handOff(String url, HtmlScanner.Page page) {
+		if (parser == null) {
 			queue.execute(() -> {
-				crawlUrl(cleanedUrl);
+				try {
+					processPage(url, page);
+				} finally {
+					finished(url);
+				}
 			});
-		} catch (MalformedURLException | URISyntaxException e) {
-			System.err.println("Failed to crawl: " + seedUrl);
+			return true;
+		}
+		try {
+			parser.put(new PageWork(url, page));
+			return true;
+		} catch (InterruptedException e) {
+			log.catching(e);
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Parses a page on the parse stage and hands it off to the index stage
+	 * 
+	 * @param work The page to parse.
+	 */
+	private void parseStage(PageWork work) {
+		boolean handedOff = false;
+		try {
+			work.document = parsePage(work.url, work.page.getText());
+			work.links = work.page.getLinks();
+			// the text is no longer needed while waiting to be indexed
+			work.page = null;
+			indexer.put(work);
+			handedOff = true;
+		} catch (InterruptedException e) {
+			log.catching(e);
+			Thread.currentThread().interrupt();
 		} finally {
-			queue.finish();
+			if (!handedOff) {
+				finished(work.url);
+			}
 		}
+	}
 
+	/**
+	 * Merges a parsed page into the index on the index stage
+	 * 
+	 * @param work The page to index.
+	 */
+	private void indexStage(PageWork work) {
+		try {
+			indexPage(work.url, work.document, work.links);
+		} finally {
+			finished(work.url);
+		}
+	}
+
+	/**
+	 * Marks a URL taken from the frontier as done, whether or not its page was
+	 * indexed. It is not crawled again after resuming from a checkpoint.
+	 * 
+	 * @param url The URL crawled.
+	 */
+	private void finished(String url) {
+		if (outstanding.contains(url)) {
+			crawlLock.readLock().lock();
+			try {
+				outstanding.remove(url);
+			} finally {
+				crawlLock.readLock().unlock();
+			}
+		}
+		finished();
+	}
+
+	/**
+	 * Marks a scheduled page as done, waking up the crawl if it was the last one
+	 */
+	private void finished() {
+		synchronized (pendingLock) {
+			pending--;
+			if (pending == 0) {
+				pendingLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until every scheduled page has been fetched and indexed
+	 */
+	private void finish() {
+		synchronized (pendingLock) {
+			try {
+				while (pending > 0) {
+					pendingLock.wait();
+				}
+			} catch (InterruptedException e) {
+				System.err.println("Warning: Crawl interrupted while finishing.");
+				log.catching(e);
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	/**
@@ -87,46 +709,78 @@ public class WebCrawler {
 	private void crawlUrl(String url) {
 		try {
 			log.debug("Thread {} started crawler work on {}", Thread.currentThread().getName(), url);
-			int indexCount = 0;
-			Stemmer stemmer = new SnowballStemmer(ENGLISH);
-			synchronized (visitedUrls) {
-				visitedUrls.add(url);
-			}
-
-			URL currentUrl = new URL(url);
-			String html = HtmlFetcher.fetch(currentUrl, 3);
-
-			if (html != null) {
-				String cleanedLinkHtml = HtmlCleaner.stripBlockElements(html);
-				List<URL> links = new ArrayList<>();
-				LinkFinder.findUrls(currentUrl, cleanedLinkHtml, links);
-				String cleanedTextHtml = HtmlCleaner.stripHtml(html);
-				InvertedIndex local = new InvertedIndex();
-				for (String word : FileStemmer.parse(cleanedTextHtml)) {
-					String stemmed = stemmer.stem(word).toString();
-					indexCount++;
-					local.addData(stemmed, url, indexCount);
-				}
-
-				index.addAll(local);
-				synchronized (visitedUrls) {
-					for (URL link : links) {
-						String cleanedLink = cleanUrl(link.toString());
-						if (!visitedUrls.contains(cleanedLink) && visitedUrls.size() < limit) {
-							visitedUrls.add(cleanedLink);
-							queue.execute(() -> crawlUrl(cleanedLink));
-						}
-					}
-				}
-				log.debug("Thread {} finished crawler work on {}", Thread.currentThread().getName(), url);
+			if (frontier.started(url)) {
+				dispatch();
+			}
+			HtmlScanner.Page page;
+			try {
+				page = HtmlFetcher.fetchPage(new URL(url), 3, pool, frontier.getCanonicalizer());
+			} finally {
+				fetched(url);
+			}
+			if (page != null) {
+				processPage(url, page);
 			}
 		} catch (MalformedURLException e) {
 			System.err.println("Failed to crawl: " + url);
-		} catch (URISyntaxException e) {
-			System.err.println("Failed to crawl: " + url);
+		} finally {
+			finished(url);
 		}
 	}
 
+	/**
+	 * Indexes the content of a fetched page and admits the new links it contains
+	 * to the frontier.
+	 * 
+	 * @param url  The URL the page was fetched from.
+	 * @param page The links and text of the page.
+	 */
+	private void processPage(String url, HtmlScanner.Page page) {
+		indexPage(url, parsePage(url, page.getText()), page.getLinks());
+	}
+
+	/**
+	 * Stems the text of a fetched page into the words of a document
+	 * 
+	 * @param url  The URL the page was fetched from.
+	 * @param text The text of the page.
+	 * @return the words of the page
+	 */
+	private DocumentAccumulator parsePage(String url, String text) {
+		Stemmer stemmer = stemmers.get();
+		DocumentAccumulator document = new DocumentAccumulator(url);
+		Tokenizer tokenizer = new Tokenizer().reset(text);
+		while (tokenizer.next()) {
+			document.add(stemmer.stem(tokenizer.word()).toString());
+		}
+		return document;
+	}
+
+	/**
+	 * Merges the words of a page into the index and admits the new links it
+	 * contains to the frontier.
+	 * 
+	 * @param url      The URL the page was fetched from.
+	 * @param document The words of the page.
+	 * @param links    The links of the page.
+	 */
+	private void indexPage(String url, DocumentAccumulator document, List<String> links) {
+		// indexed, done, and its links admitted all at once for checkpoints
+		crawlLock.readLock().lock();
+		try {
+			index.addAll(document);
+			outstanding.remove(url);
+			// links are already canonical
+			for (String link : links) {
+				add(link);
+			}
+		} finally {
+			crawlLock.readLock().unlock();
+			dispatch();
+		}
+		log.debug("Thread {} finished crawler work on {}", Thread.currentThread().getName(), url);
+	}
+
 	/**
 	 * Crawls the web starting with the provided seed URL, indexing all pages
 	 * encountered along the way. Allows the user to update the max links crawled by
@@ -136,38 +790,112 @@ public class WebCrawler {
 	 * @param max     Number to change the limit into
 	 */
 	public void crawl(String seedUrl, Integer max) {
-		limit = max;
+		frontier.setLimit(max);
 		crawl(seedUrl);
 	}
 
 	/**
 	 * 
-	 * Cleans the provided URL by removing any query parameters, fragment
-	 * identifiers, or relative paths
+	 * Cleans the provided URL into the canonical form of the frontier, removing
+	 * fragment identifiers and relative paths, and the query unless the
+	 * canonicalizer keeps it
 	 * 
 	 * @param url The URL to clean.
-	 * @return The cleaned URL as a string.
-	 * @throws URISyntaxException    If the provided URL syntax is invalid.
-	 * @throws MalformedURLException If the provided URL is malformed.
+	 * @return The cleaned URL as a string, or null if it is not a valid HTTP(S)
+	 *         URL.
+	 * @see UrlCanonicalizer
 	 */
-	private String cleanUrl(String url) throws URISyntaxException, MalformedURLException {
-		URL cleanedUrl = new URL(url);
-		cleanedUrl = new URL(cleanedUrl.getProtocol(), cleanedUrl.getHost(), cleanedUrl.getPort(),
-				cleanedUrl.getPath());
-		cleanedUrl = new URL(cleanedUrl.toExternalForm());
-		return cleanedUrl.toURI().normalize().toString();
+	private String cleanUrl(String url) {
+		return frontier.getCanonicalizer().canonicalize(url);
 	}
 
 	/**
-	 * Checks if the given URL is present in the visitedUrls set.
+	 * Checks if the given URL was admitted to the crawl.
 	 *
 	 * @param url The URL to check.
-	 * @return true if the URL is present in visitedUrls, false otherwise.
+	 * @return true if the URL was admitted, false otherwise.
 	 */
 	public boolean hasUrl(String url) {
-		synchronized (visitedUrls) {
-			return visitedUrls.contains(url);
+		String cleanedUrl = cleanUrl(url);
+		return cleanedUrl != null && frontier.contains(cleanedUrl);
+	}
+
+	/**
+	 * Returns the number of urls waiting to be fetched, whose host is ready or
+	 * waiting out its delay
+	 * 
+	 * @return the depth of the fetch stage
+	 */
+	public int fetchDepth() {
+		return frontier.queued();
+	}
+
+	/**
+	 * Returns the number of fetches in flight
+	 * 
+	 * @return the number of urls being fetched, or 0 if pages are fetched on the
+	 *         work queue
+	 */
+	public int fetching() {
+		return fetchLimit == null ? 0 : inFlight - fetchLimit.availablePermits();
+	}
+
+	/**
+	 * Returns the number of fetched pages waiting to be parsed
+	 * 
+	 * @return the depth of the parse stage, or 0 if pages are parsed on the work
+	 *         queue
+	 */
+	public int parseDepth() {
+		return parser == null ? 0 : parser.depth();
+	}
+
+	/**
+	 * Returns the number of parsed pages waiting to be merged into the index
+	 * 
+	 * @return the depth of the index stage, or 0 if pages are indexed on the work
+	 *         queue
+	 */
+	public int indexDepth() {
+		return indexer == null ? 0 : indexer.depth();
+	}
+
+	@Override
+	public String toString() {
+		String fetch = "Fetcher[depth=" + fetchDepth() + ", active=" + fetching() + "/" + inFlight + "]";
+		if (parser == null) {
+			return "WebCrawler[" + fetch + ", size=" + frontier.size() + "]";
 		}
+		return "WebCrawler[" + fetch + ", " + parser + ", " + indexer + ", size=" + frontier.size() + "]";
 	}
 
-}
\ No newline at end of file
+	/**
+	 * A page handed off between the stages of the pipeline
+	 */
+	private static class PageWork {
+		/** Initalize URL the page was fetched from */
+		private final String url;
+
+		/** Initalize links and text of the page, until it is parsed */
+		private HtmlScanner.Page page;
+
+		/** Initalize words of the page, once it is parsed */
+		private DocumentAccumulator document;
+
+		/** Initalize links of the page, once it is parsed */
+		private List<String> links;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param url  the URL the page was fetched from
+		 * @param page the links and text of the page
+		 */
+		private PageWork(String url, HtmlScanner.Page page) {
+			this.url = url;
+			this.page = page;
+			this.document = null;
+			this.links = null;
+		}
+	}
+}
@@ -18,7 +18,7 @@ import org.apache.logging.log4j.Logger;
  * @author Grayson Ruehlmann
  * @version Spring 2023
  */
-public class WorkQueue {
+public class WorkQueue implements TaskQueue {
 	/** Workers that wait until work (or tasks) are available. */
 	private final Worker[] workers;
 
@@ -28,9 +28,6 @@ public class WorkQueue {
 	/** Used to signal the workers should terminate. */
 	private volatile boolean shutdown;
 
-	/** The default number of worker threads to use when not specified. */
-	public static final int DEFAULT = 5;
-
 	/** Logger used for this class. */
 	private static final Logger log = LogManager.getLogger();
 
@@ -74,6 +71,7 @@ public class WorkQueue {
 	 *
 	 * @param task work request (in the form of a {@link Runnable} object)
 	 */
+	@Override
 	public void execute(Runnable task) {
 		synchronized (pendingLock) {
 			pendingTasks++;
@@ -88,6 +86,7 @@ public class WorkQueue {
 	 * Waits for all pending work (or tasks) to be finished. Does not terminate the
 	 * worker threads so that the work queue can continue to be used.
 	 */
+	@Override
 	public void finish() {
 		synchronized (pendingLock) {
 			try {
@@ -108,6 +107,7 @@ public class WorkQueue {
 	 * the worker threads to terminate. The work queue cannot be reused after this
 	 * call completes.
 	 */
+	@Override
 	public void join() {
 		try {
 			finish();
@@ -127,6 +127,7 @@ public class WorkQueue {
 	 * Asks the queue to shutdown. Any unprocessed work (or tasks) will not be
 	 * finished, but threads in-progress will not be interrupted.
 	 */
+	@Override
 	public void shutdown() {
 		// safe to do unsynchronized due to volatile keyword
 		shutdown = true;
@@ -140,6 +141,7 @@ public class WorkQueue {
 	 *
 	 * @return number of worker threads
 	 */
+	@Override
 	public int size() {
 		return workers.length;
 	}